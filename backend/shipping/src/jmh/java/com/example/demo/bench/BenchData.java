@@ -0,0 +1,113 @@
+package com.example.demo.bench;
+
+import com.example.demo.config.BluedartHttpClientConfig;
+import com.example.demo.dto.GenerateWaybillRequest;
+import com.example.demo.model.WaybillRecord;
+import com.example.demo.service.BulkWaybillFileParser;
+import com.example.demo.service.WaybillPayloadLogger;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic bulk uploads and waybill records shared by the benchmarks.
+ * Rows are generated deterministically, so runs compare like with like.
+ */
+public final class BenchData {
+
+    public static final String CSV_HEADER = "CustomerCode,CustomerName,CustomerMobile,CustomerAddress1,"
+            + "CustomerPincode,OriginArea,ConsigneeName,ConsigneeMobile,ConsigneeAddress1,ConsigneePincode,"
+            + "ProductCode,SubProductCode,ActualWeight,DeclaredValue,PieceCount,CollectableAmount,"
+            + "CreditReferenceNo,PickupDate,ItemName,ItemValue,Itemquantity";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private BenchData() {
+    }
+
+    /** A CSV upload with {@code rows} data rows, as the bulk template produces it. */
+    public static String csv(int rows) {
+        StringBuilder csv = new StringBuilder(rows * 200).append(CSV_HEADER).append('\n');
+        for (int i = 0; i < rows; i++) {
+            csv.append("099960,Development Talkies,98").append(String.format("%08d", i))
+                    .append(",\"Shop ").append(i % 97).append(", MG Road\",400001,BOM,")
+                    .append("Customer ").append(i).append(",97").append(String.format("%08d", i))
+                    .append(",\"Flat ").append(i % 311).append(", Residency Road\",56000").append(i % 10)
+                    .append(",A,").append(i % 3 == 0 ? "C" : "P").append(',')
+                    .append(0.5 + i % 20 / 10.0).append(',').append(100 + i % 900).append(",1,")
+                    .append(i % 3 == 0 ? 100 + i % 900 : 0).append(",REF-").append(i)
+                    .append(",2024-01-15,T-shirt,").append(100 + i % 900).append(",1\n");
+        }
+        return csv.toString();
+    }
+
+    public static BulkWaybillFileParser parser() {
+        return new BulkWaybillFileParser(
+                new WaybillPayloadLogger(0, 0, List.of(), 4096), "BENCH01", "bench-licence-key");
+    }
+
+    public static List<GenerateWaybillRequest> requests(int rows) {
+        try {
+            return parser().parse(new ByteArrayInputStream(csv(rows).getBytes(StandardCharsets.UTF_8)), "bench.csv");
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not build benchmark requests", e);
+        }
+    }
+
+    /** Saved waybills as the bulk path stores them: the request as a map, plus the gateway result. */
+    public static List<WaybillRecord> records(int count) {
+        List<WaybillRecord> records = new ArrayList<>(count);
+        int i = 0;
+        for (GenerateWaybillRequest request : requests(count)) {
+            String awbNo = String.valueOf(81_000_000_000L + i++);
+            records.add(new WaybillRecord(
+                    awbNo,
+                    request.creditReferenceNo(),
+                    MAPPER.convertValue(request, MAP_TYPE),
+                    gatewayResponse(awbNo)));
+        }
+        return records;
+    }
+
+    public static Map<String, Object> gatewayResponse(String awbNo) {
+        return Map.of("GenerateWayBillResult", Map.of(
+                "AWBNo", awbNo,
+                "DestinationArea", "BLR",
+                "DestinationLocation", "BANGALORE",
+                "IsError", false,
+                "Status", List.of(Map.of("StatusCode", "Valid", "StatusInformation", "Waybill Generation Successful"))));
+    }
+
+    /** The gateway client configuration with the application.properties defaults, aimed at {@code baseUrl}. */
+    public static BluedartHttpClientConfig httpClientConfig(String baseUrl) {
+        BluedartHttpClientConfig config = new BluedartHttpClientConfig();
+        set(config, "baseUrl", baseUrl);
+        set(config, "maxConnections", 64);
+        set(config, "gatewayMaxPerRoute", 32);
+        set(config, "defaultMaxPerRoute", 4);
+        set(config, "connectTimeoutMs", 5000L);
+        set(config, "readTimeoutMs", 30000L);
+        set(config, "poolTimeoutMs", 10000L);
+        set(config, "keepAliveMs", 30000L);
+        set(config, "connectionTtlMs", 300000L);
+        return config;
+    }
+
+    /** Sets a field normally injected by {@code @Value}, for beans built outside Spring. */
+    public static void set(Object target, String field, Object value) {
+        try {
+            Field f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + field + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+}
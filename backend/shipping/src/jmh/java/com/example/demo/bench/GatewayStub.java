@@ -0,0 +1,71 @@
+package com.example.demo.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the GenerateWayBill endpoint: answers every POST with
+ * a successful result after {@code latencyMs}, so benchmarks measure the
+ * client side against a gateway with a known, fixed response time.
+ */
+public final class GatewayStub implements AutoCloseable {
+
+    public static final String PATH = "/in/transportation/waybill/v1/GenerateWayBill";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final AtomicLong awbNo = new AtomicLong(81_000_000_000L);
+
+    public GatewayStub(long latencyMs) throws IOException {
+        this.handlers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "gateway-stub");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(handlers);
+        server.createContext(PATH, exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            if (latencyMs > 0) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] response = MAPPER.writeValueAsBytes(BenchData.gatewayResponse(String.valueOf(awbNo.getAndIncrement())));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String url() {
+        return baseUrl() + PATH;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+}
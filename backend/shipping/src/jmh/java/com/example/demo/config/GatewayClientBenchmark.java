@@ -0,0 +1,88 @@
+package com.example.demo.config;
+
+import com.example.demo.bench.BenchData;
+import com.example.demo.bench.GatewayStub;
+import com.example.demo.dto.GenerateWaybillRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GenerateWayBill calls per second from 8 threads against a local stub:
+ * the pooled keep-alive {@code bluedartRestTemplate} versus the plain
+ * {@code new RestTemplate()} used before, which goes through
+ * HttpURLConnection and keeps at most 5 idle connections per host.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class GatewayClientBenchmark {
+
+    @Param({"0", "5"})
+    long gatewayLatencyMs;
+
+    private GatewayStub gateway;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate pooled;
+    private RestTemplate unpooled;
+    private HttpEntity<byte[]> entity;
+
+    @Setup
+    public void setUp() throws Exception {
+        gateway = new GatewayStub(gatewayLatencyMs);
+        BluedartHttpClientConfig config = BenchData.httpClientConfig(gateway.baseUrl());
+        connectionManager = config.bluedartConnectionManager();
+        httpClient = config.bluedartHttpClient(connectionManager);
+        pooled = config.bluedartRestTemplate(httpClient);
+        unpooled = new RestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("JWTToken", "bench");
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        byte[] body = new ObjectMapper().writerFor(GenerateWaybillRequest.class)
+                .writeValueAsBytes(BenchData.requests(1).get(0));
+        entity = new HttpEntity<>(body, headers);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        httpClient.close();
+        connectionManager.close();
+        gateway.close();
+    }
+
+    @Benchmark
+    public Map<?, ?> pooled() {
+        return pooled.postForEntity(gateway.url(), entity, Map.class).getBody();
+    }
+
+    @Benchmark
+    public Map<?, ?> plainRestTemplate() {
+        return unpooled.postForEntity(gateway.url(), entity, Map.class).getBody();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one bulk row's GenerateWayBill body, in nanoseconds: building it
+ * from a parsed row and serializing it. The typed request with the cached
+ * writer is compared with the eight nested HashMaps the parser built before
+ * ({@link #legacyPayload}, copied from that version) written through
+ * {@code mapper.writeValueAsBytes}. The {@code write*} benchmarks time
+ * serialization of a prebuilt payload alone. Run with {@code -prof gc} to
+ * compare allocation per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaybillPayloadBenchmark {
+
+    private static final String PICKUP_DATE = "/Date(1705276800000)/";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectWriter requestWriter = mapper.writerFor(GenerateWaybillRequest.class);
+    private final GenerateWaybillRequest.ApiProfile profile =
+            new GenerateWaybillRequest.ApiProfile("BENCH01", "bench-licence-key");
+
+    private Map<String, String> row;
+    private GenerateWaybillRequest typed;
+    private Map<String, Object> legacy;
+
+    @Setup
+    public void setUp() {
+        row = new HashMap<>();
+        row.put("CustomerCode", "099960");
+        row.put("CustomerName", "Development Talkies");
+        row.put("CustomerMobile", "9800000042");
+        row.put("CustomerAddress1", "Shop 42, MG Road");
+        row.put("CustomerPincode", "400001");
+        row.put("OriginArea", "BOM");
+        row.put("ConsigneeName", "Customer 42");
+        row.put("ConsigneeMobile", "9700000042");
+        row.put("ConsigneeAddress1", "Flat 42, Residency Road");
+        row.put("ConsigneePincode", "560002");
+        row.put("ProductCode", "A");
+        row.put("SubProductCode", "C");
+        row.put("ActualWeight", "0.7");
+        row.put("DeclaredValue", "142");
+        row.put("PieceCount", "1");
+        row.put("CollectableAmount", "142");
+        row.put("CreditReferenceNo", "REF-42");
+        row.put("ItemName", "T-shirt");
+        row.put("ItemValue", "142");
+        row.put("Itemquantity", "1");
+
+        typed = typedPayload(row);
+        legacy = legacyPayload(row);
+    }
+
+    @Benchmark
+    public byte[] typedBuildAndWrite() throws JsonProcessingException {
+        return requestWriter.writeValueAsBytes(typedPayload(row));
+    }
+
+    @Benchmark
+    public byte[] legacyBuildAndWrite() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(legacyPayload(row));
+    }
+
+    @Benchmark
+    public byte[] writeTyped() throws JsonProcessingException {
+        return requestWriter.writeValueAsBytes(typed);
+    }
+
+    @Benchmark
+    public byte[] writeLegacy() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(legacy);
+    }
+
+    /** What BulkWaybillFileParser builds per row, with the date already converted. */
+    private GenerateWaybillRequest typedPayload(Map<String, String> row) {
+        return new GenerateWaybillRequest(
+                profile,
+                new GenerateWaybillRequest.Shipper(
+                        row.get("CustomerCode"),
+                        row.get("CustomerName"),
+                        row.get("CustomerMobile"),
+                        row.get("CustomerAddress1"),
+                        row.get("CustomerPincode"),
+                        row.get("OriginArea")),
+                new GenerateWaybillRequest.Consignee(
+                        row.get("ConsigneeName"),
+                        row.get("ConsigneeMobile"),
+                        row.get("ConsigneeAddress1"),
+                        row.get("ConsigneePincode")),
+                new GenerateWaybillRequest.Services(
+                        row.get("ProductCode"),
+                        row.get("SubProductCode"),
+                        Double.parseDouble(row.get("ActualWeight")),
+                        Double.parseDouble(row.get("DeclaredValue")),
+                        (int) Double.parseDouble(row.get("PieceCount")),
+                        Double.parseDouble(row.get("CollectableAmount")),
+                        row.get("CreditReferenceNo"),
+                        PICKUP_DATE,
+                        new GenerateWaybillRequest.Item(
+                                row.get("ItemName"),
+                                Double.parseDouble(row.get("ItemValue")),
+                                (int) Double.parseDouble(row.get("Itemquantity")),
+                                PICKUP_DATE)));
+    }
+
+    /** The map payload the parser built before the typed request, with the date already converted. */
+    private static Map<String, Object> legacyPayload(Map<String, String> row) {
+        Map<String, Object> shipper = new HashMap<>();
+        shipper.put("CustomerCode", row.get("CustomerCode"));
+        shipper.put("CustomerName", row.get("CustomerName"));
+        shipper.put("CustomerMobile", row.get("CustomerMobile"));
+        shipper.put("CustomerAddress1", row.get("CustomerAddress1"));
+        shipper.put("CustomerAddress2", "");
+        shipper.put("CustomerAddress3", "");
+        shipper.put("CustomerAddressinfo", "");
+        shipper.put("CustomerPincode", row.get("CustomerPincode"));
+        shipper.put("CustomerTelephone", "");
+        shipper.put("CustomerEmailID", "test@bd.com");
+        shipper.put("IsToPayCustomer", true);
+        shipper.put("OriginArea", row.get("OriginArea"));
+        shipper.put("Sender", "BulkUpload");
+        shipper.put("VendorCode", "");
+
+        Map<String, Object> consignee = new HashMap<>();
+        consignee.put("ConsigneeName", row.get("ConsigneeName"));
+        consignee.put("ConsigneeMobile", row.get("ConsigneeMobile"));
+        consignee.put("ConsigneeAddress1", row.get("ConsigneeAddress1"));
+        consignee.put("ConsigneeAddress2", "");
+        consignee.put("ConsigneeAddress3", "");
+        consignee.put("ConsigneeAddressinfo", "");
+        consignee.put("ConsigneePincode", row.get("ConsigneePincode"));
+        consignee.put("ConsigneeTelephone", "");
+        consignee.put("ConsigneeEmailID", "test@bd.com");
+        consignee.put("ConsigneeAttention", "Bulk");
+        consignee.put("AvailableDays", "");
+        consignee.put("AvailableTiming", "");
+
+        Map<String, Object> services = new HashMap<>();
+        services.put("AWBNo", "");
+        services.put("ProductCode", row.get("ProductCode"));
+        services.put("SubProductCode", row.get("SubProductCode"));
+        services.put("ProductType", 1);
+        services.put("ActualWeight", Double.parseDouble(row.get("ActualWeight")));
+        services.put("DeclaredValue", Double.parseDouble(row.get("DeclaredValue")));
+        services.put("PieceCount", (int) Double.parseDouble(row.get("PieceCount")));
+        services.put("ItemCount", (int) Double.parseDouble(row.get("PieceCount")));
+        services.put("CollectableAmount", Double.parseDouble(row.get("CollectableAmount")));
+        services.put("CreditReferenceNo", row.get("CreditReferenceNo"));
+        services.put("CreditReferenceNo2", "");
+        services.put("CreditReferenceNo3", "");
+        services.put("PickupDate", PICKUP_DATE);
+        services.put("PickupTime", "1600");
+        services.put("PickupMode", "");
+        services.put("PickupType", "");
+        services.put("RegisterPickup", true);
+        services.put("PDFOutputNotRequired", true);
+        services.put("PackType", "");
+        services.put("ParcelShopCode", "");
+        services.put("PayableAt", "");
+        services.put("IsReversePickup", true);
+        services.put("IsPartialPickup", false);
+        services.put("IsForcePickup", false);
+        services.put("IsDedicatedDeliveryNetwork", false);
+        services.put("IsDutyTaxPaidByShipper", false);
+        services.put("TotalCashPaytoCustomer", 0);
+        services.put("Officecutofftime", "");
+        services.put("PreferredPickupTimeSlot", "");
+        services.put("DeliveryTimeSlot", "");
+        services.put("ProductFeature", "");
+        services.put("SpecialInstruction", "");
+        services.put("noOfDCGiven", 0);
+
+        Map<String, Object> commodity = new HashMap<>();
+        commodity.put("CommodityDetail1", "General Goods");
+        commodity.put("CommodityDetail2", "");
+        commodity.put("CommodityDetail3", "");
+        services.put("Commodity", commodity);
+
+        Map<String, Object> dimension = new HashMap<>();
+        dimension.put("Length", 10.0);
+        dimension.put("Breadth", 10.0);
+        dimension.put("Height", 10.0);
+        dimension.put("Count", 1);
+        services.put("Dimensions", List.of(dimension));
+
+        Map<String, Object> item = new HashMap<>();
+        item.put("ItemName", row.get("ItemName"));
+        item.put("ItemValue", Double.parseDouble(row.get("ItemValue")));
+        item.put("Itemquantity", (int) Double.parseDouble(row.get("Itemquantity")));
+        item.put("TotalValue", Double.parseDouble(row.get("ItemValue")));
+        item.put("InvoiceNumber", "");
+        item.put("InvoiceDate", PICKUP_DATE);
+        services.put("itemdtl", List.of(item));
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("Shipper", shipper);
+        request.put("Consignee", consignee);
+        request.put("Services", services);
+
+        Map<String, Object> profile = new HashMap<>();
+        profile.put("LoginID", "BENCH01");
+        profile.put("LicenceKey", "bench-licence-key");
+        profile.put("Api_type", "S");
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("Request", request);
+        payload.put("Profile", profile);
+        return payload;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.repository;
+
+import com.example.demo.bench.BenchData;
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a whole waybill history, in milliseconds, per
+ * storage format. {@code json} is the legacy pretty-printed array as a
+ * baseline; {@code ndjson} and {@code smile} go through
+ * {@link WaybillRecordCodec} frame by frame, as the journal does.
+ * Generated records are used unless {@code -p file=<path>} points at a
+ * real history file (any format {@link WaybillStorageConverter} reads).
+ * Sizes are reported by {@code WaybillStorageConverter sizes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaybillCodecBenchmark {
+
+    @Param({"json", "ndjson", "smile"})
+    String format;
+
+    @Param({"10000"})
+    int records;
+
+    @Param({""})
+    String file;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectWriter prettyWriter = mapper.writerWithDefaultPrettyPrinter();
+    private final ObjectReader arrayReader = mapper.readerFor(new TypeReference<List<WaybillRecord>>() {});
+
+    private WaybillRecordCodec codec;
+    private List<WaybillRecord> history;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        history = file.isEmpty() ? BenchData.records(records) : WaybillStorageConverter.read(Path.of(file));
+        codec = "json".equals(format) ? null : WaybillRecordCodec.of(format);
+        encoded = write();
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        if (codec == null) {
+            return prettyWriter.writeValueAsBytes(history);
+        }
+        return WaybillStorageConverter.encode(codec, history);
+    }
+
+    @Benchmark
+    public void read(Blackhole bh) throws IOException {
+        if (codec == null) {
+            bh.consume(arrayReader.readValue(encoded));
+            return;
+        }
+        codec.forEachFrame(new ByteArrayInputStream(encoded), encoded.length, frame -> {
+            try {
+                bh.consume(codec.decode(frame));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
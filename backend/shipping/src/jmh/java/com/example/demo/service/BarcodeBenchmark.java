@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.Barcode128;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One AWB barcode as the label embeds it, in microseconds: the vector
+ * Barcode128 template drawn today versus the ZXing BitMatrix, PNG encode
+ * and iText PNG decode it replaced. Both end in an iText {@link Image}
+ * ready to be scaled into the label cell.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BarcodeBenchmark {
+
+    private static final String AWB_NO = "81000000042";
+
+    private Document document;
+    private PdfContentByte cb;
+
+    @Setup
+    public void setUp() throws Exception {
+        document = new Document(PageSize.A4);
+        PdfWriter writer = PdfWriter.getInstance(document, OutputStream.nullOutputStream());
+        document.open();
+        cb = writer.getDirectContent();
+    }
+
+    @TearDown
+    public void tearDown() {
+        document.close();
+    }
+
+    /** Same steps as WaybillPdfService#barcodeTemplate and its caller. */
+    @Benchmark
+    public Image vectorBarcode128() throws Exception {
+        Barcode128 code = new Barcode128();
+        code.setCode(AWB_NO);
+        code.setFont(null);
+        code.setBarHeight(code.getBarcodeSize().getWidth() / 5f);
+        return Image.getInstance(code.createTemplateWithBarcode(cb, null, null));
+    }
+
+    /** The per-label barcode path before vector barcodes. */
+    @Benchmark
+    public Image zxingPng() throws Exception {
+        BitMatrix matrix = new MultiFormatWriter()
+                .encode(AWB_NO, BarcodeFormat.CODE_128, 300, 60);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(matrix, "png", baos);
+        return Image.getInstance(baos.toByteArray());
+    }
+}
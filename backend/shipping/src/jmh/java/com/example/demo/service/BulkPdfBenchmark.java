@@ -0,0 +1,70 @@
+package com.example.demo.service;
+
+import com.example.demo.bench.BenchData;
+import com.example.demo.model.WaybillRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time of one bulk label PDF, parallel chunked rendering versus the
+ * sequential page stream, written to a discarding stream so disk speed
+ * does not count. The render pool has one thread per core, as with
+ * {@code bluedart.pdf.threads=0}; chunk settings are the defaults.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BulkPdfBenchmark {
+
+    @Param({"true", "false"})
+    boolean parallel;
+
+    @Param({"1000", "5000"})
+    int records;
+
+    @Param({"LABEL_4X6"})
+    String size;
+
+    private ExecutorService renderExecutor;
+    private WaybillPdfService pdfService;
+    private List<WaybillRecord> batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        renderExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        pdfService = new WaybillPdfService(new WaybillRenderResources(), renderExecutor);
+        BenchData.set(pdfService, "parallelRender", parallel);
+        BenchData.set(pdfService, "chunkSize", 250);
+        BenchData.set(pdfService, "maxPendingChunks", 16);
+        batch = BenchData.records(records);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void generateBulkPdf() throws Exception {
+        pdfService.generateBulkPdf(batch, size, OutputStream.nullOutputStream());
+    }
+}
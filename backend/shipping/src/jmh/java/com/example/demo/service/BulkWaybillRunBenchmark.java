@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import com.example.demo.bench.BenchData;
+import com.example.demo.bench.GatewayStub;
+import com.example.demo.config.BluedartHttpClientConfig;
+import com.example.demo.dto.BulkWaybillResult;
+import com.example.demo.dto.GenerateWaybillRequest;
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per bulk row against a local GenerateWayBill stub with a fixed
+ * response time, by in-flight limit. {@code maxInFlight=1} is the old
+ * one-row-at-a-time behaviour; rows go through the pooled gateway client
+ * and a {@link BulkWaybillRun}, as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BulkWaybillRunBenchmark {
+
+    private static final int ROWS = 200;
+
+    @Param({"1", "8", "32"})
+    int maxInFlight;
+
+    @Param({"20"})
+    long gatewayLatencyMs;
+
+    private GatewayStub gateway;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private ExecutorService executor;
+    private List<GenerateWaybillRequest> requests;
+    private final ObjectWriter requestWriter = new ObjectMapper().writerFor(GenerateWaybillRequest.class);
+
+    @Setup
+    public void setUp() throws Exception {
+        gateway = new GatewayStub(gatewayLatencyMs);
+        BluedartHttpClientConfig config = BenchData.httpClientConfig(gateway.baseUrl());
+        connectionManager = config.bluedartConnectionManager();
+        httpClient = config.bluedartHttpClient(connectionManager);
+        restTemplate = config.bluedartRestTemplate(httpClient);
+        executor = Executors.newFixedThreadPool(32);
+        requests = BenchData.requests(ROWS);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        httpClient.close();
+        connectionManager.close();
+        gateway.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public BulkWaybillResult bulkRun() {
+        BulkWaybillRun run = new BulkWaybillRun(
+                executor,
+                maxInFlight,
+                this::send,
+                GenerateWaybillRequest::creditReferenceNo,
+                BulkRowListener.NONE,
+                null
+        );
+        for (GenerateWaybillRequest request : requests) {
+            run.submit(request);
+        }
+        return run.finish();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private WaybillRecord send(GenerateWaybillRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("JWTToken", "bench");
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        try {
+            Map response = restTemplate.postForEntity(
+                    gateway.url(), new HttpEntity<>(requestWriter.writeValueAsBytes(request), headers), Map.class).getBody();
+            Map<String, Object> result = (Map<String, Object>) response.get("GenerateWayBillResult");
+            return new WaybillRecord(String.valueOf(result.get("AWBNo")), request.creditReferenceNo(), Map.of(), response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.service;
+
+import com.example.demo.bench.BenchData;
+import com.example.demo.dto.GenerateWaybillRequest;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV upload parsing, in milliseconds per file.
+ *
+ * {@code legacyRowMaps} replays the parsing used before the request
+ * iterator: a header map copy and key normalization on every row. It stops
+ * at the row maps, because request building is private to the parser, so
+ * it is a lower bound for the old path. {@code parseToList} and
+ * {@code drainIterator} include building every request;
+ * {@code firstRequest} is the time until the first row can be submitted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParseBenchmark {
+
+    @Param({"1000", "50000"})
+    int rows;
+
+    private BulkWaybillFileParser parser;
+    private byte[] csv;
+
+    @Setup
+    public void setUp() {
+        parser = BenchData.parser();
+        csv = BenchData.csv(rows).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void legacyRowMaps(Blackhole bh) throws Exception {
+        try (CSVParser csvParser = CSVFormat.DEFAULT.builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreHeaderCase(true)
+                .setTrim(true)
+                .build()
+                .parse(new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8))) {
+            for (CSVRecord record : csvParser) {
+                Map<String, String> rowData = new HashMap<>();
+                for (String header : csvParser.getHeaderMap().keySet()) {
+                    String normalizedKey = header
+                            .replace("\uFEFF", "")   // remove BOM
+                            .replace(" ", "")        // remove spaces
+                            .trim();
+                    rowData.put(normalizedKey, record.get(header).trim());
+                }
+                bh.consume(rowData);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<GenerateWaybillRequest> parseToList() throws Exception {
+        return parser.parse(new ByteArrayInputStream(csv), "bench.csv");
+    }
+
+    @Benchmark
+    public void drainIterator(Blackhole bh) throws Exception {
+        try (BulkWaybillFileParser.CsvRequestIterator requests = parser.csvRequests(new ByteArrayInputStream(csv))) {
+            while (requests.hasNext()) {
+                bh.consume(requests.next());
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public GenerateWaybillRequest firstRequest() throws Exception {
+        try (BulkWaybillFileParser.CsvRequestIterator requests = parser.csvRequests(new ByteArrayInputStream(csv))) {
+            return requests.next();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import com.example.demo.bench.BenchData;
+import com.example.demo.model.WaybillRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single waybill PDFs rendered per second, by size (A4 carries four copies
+ * of the label). {@code buildResources} is what every label paid before the
+ * fonts, logo and header table were shared: loading them from scratch.
+ * The label cache is bypassed; this is the renderer alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LabelRenderBenchmark {
+
+    @Param({"A4", "LABEL_4X6"})
+    String size;
+
+    private ExecutorService renderExecutor;
+    private WaybillPdfService pdfService;
+    private WaybillRecord record;
+
+    @Setup
+    public void setUp() throws Exception {
+        renderExecutor = Executors.newSingleThreadExecutor();
+        pdfService = new WaybillPdfService(new WaybillRenderResources(), renderExecutor);
+        record = BenchData.records(1).get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public byte[] generatePdf() throws Exception {
+        return pdfService.generatePdf(record, size);
+    }
+
+    @Benchmark
+    public WaybillRenderResources buildResources() throws Exception {
+        return new WaybillRenderResources();
+    }
+}
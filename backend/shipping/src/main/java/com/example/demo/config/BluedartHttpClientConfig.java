@@ -0,0 +1,102 @@
+package com.example.demo.config;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+
+/**
+ * Shared HTTP client for every call to the Bluedart gateway.
+ *
+ * Connections are pooled and kept alive between waybills, so bulk uploads
+ * pay the TCP + TLS handshake once per connection rather than once per row,
+ * and every stage (pool lease, connect, response) has an explicit timeout.
+ */
+@Configuration
+public class BluedartHttpClientConfig {
+
+    @Value("${bluedart.base-url}")
+    private String baseUrl;
+
+    @Value("${bluedart.http.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${bluedart.http.max-per-route:32}")
+    private int gatewayMaxPerRoute;
+
+    @Value("${bluedart.http.default-max-per-route:4}")
+    private int defaultMaxPerRoute;
+
+    @Value("${bluedart.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${bluedart.http.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${bluedart.http.pool-timeout-ms:10000}")
+    private long poolTimeoutMs;
+
+    @Value("${bluedart.http.keep-alive-ms:30000}")
+    private long keepAliveMs;
+
+    @Value("${bluedart.http.connection-ttl-ms:300000}")
+    private long connectionTtlMs;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager bluedartConnectionManager() {
+        PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(defaultMaxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMilliseconds(connectionTtlMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+
+        // The gateway is the only hot route; give it most of the pool.
+        manager.setMaxPerRoute(gatewayRoute(), gatewayMaxPerRoute);
+        return manager;
+    }
+
+    /** Route key as the client's route planner builds it: explicit port, secure flag for https. */
+    private HttpRoute gatewayRoute() {
+        URI uri = URI.create(baseUrl);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), port), null, secure);
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient bluedartHttpClient(PoolingHttpClientConnectionManager bluedartConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(bluedartConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate bluedartRestTemplate(CloseableHttpClient bluedartHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(bluedartHttpClient));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class BulkExecutorConfig {
+
+    @Value("${bluedart.bulk.threads:16}")
+    private int threads;
+
+    @Value("${bluedart.bulk.job-threads:2}")
+    private int jobThreads;
+
+    @Value("${bluedart.pdf.threads:0}")
+    private int pdfThreads;
+
+    /** Shared pool that runs GenerateWayBill calls for bulk uploads. */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService bulkWaybillExecutor() {
+        return namedPool("bulk-waybill-", threads);
+    }
+
+    /** Runs whole bulk jobs (parse, generate, render); each job fans out onto bulkWaybillExecutor. */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService bulkJobExecutor() {
+        return namedPool("bulk-job-", jobThreads);
+    }
+
+    /** Renders bulk PDF chunks; defaults to one thread per core. */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pdfRenderExecutor() {
+        int size = pdfThreads > 0 ? pdfThreads : Runtime.getRuntime().availableProcessors();
+        return namedPool("pdf-render-", size);
+    }
+
+    private ExecutorService namedPool(String prefix, int size) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, size), r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
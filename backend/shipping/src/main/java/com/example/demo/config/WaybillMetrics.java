@@ -0,0 +1,135 @@
+package com.example.demo.config;
+
+import com.example.demo.exception.GatewayLimiterRejectedException;
+import com.example.demo.exception.GatewayUnavailableException;
+import com.example.demo.service.GatewayResilience;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters for the waybill pipeline, scraped from
+ * {@code /actuator/prometheus}.
+ *
+ * <ul>
+ *     <li>{@code waybill.stage} timer, tagged {@code stage}: one histogram per
+ *     step of a request (token fetch, gateway round trip, repository save /
+ *     lookup, file parse, PDF render, report write), so p99 per stage can be
+ *     read with {@code histogram_quantile};</li>
+ *     <li>{@code waybill.requests} counter, tagged {@code operation}
+ *     ({@code single} / {@code bulk}), {@code outcome} and
+ *     {@code error_class} ({@link GatewayResilience.ErrorClass} in lower
+ *     case, {@code circuit_open}, {@code internal} or {@code none}).</li>
+ * </ul>
+ */
+@Component
+public class WaybillMetrics {
+
+    public static final String TOKEN_FETCH = "token_fetch";
+    public static final String GATEWAY = "gateway";
+    public static final String REPOSITORY_SAVE = "repository_save";
+    public static final String REPOSITORY_LOOKUP = "repository_lookup";
+    public static final String FILE_PARSE = "file_parse";
+    public static final String PDF_RENDER = "pdf_render";
+    public static final String BULK_PDF_RENDER = "bulk_pdf_render";
+    public static final String REPORT_WRITE = "report_write";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stages = new ConcurrentHashMap<>();
+    private final Map<String, Counter> outcomes = new ConcurrentHashMap<>();
+
+    public WaybillMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /* ================= STAGE TIMERS ================= */
+
+    public Timer stage(String stage) {
+        return stages.computeIfAbsent(stage, s -> Timer.builder("waybill.stage")
+                .description("Time spent in one stage of the waybill pipeline")
+                .tag("stage", s)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, start);
+        }
+    }
+
+    /** Records the time since {@code startNanos} (from {@link System#nanoTime()}). */
+    public void record(String stage, long startNanos) {
+        stage(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /* ================= OUTCOMES ================= */
+
+    public void success(String operation) {
+        outcome(operation, "success", "none");
+    }
+
+    public void failure(String operation, Throwable error) {
+        outcome(operation, "failure", errorClass(error));
+    }
+
+    private void outcome(String operation, String outcome, String errorClass) {
+        outcomes.computeIfAbsent(operation + '|' + outcome + '|' + errorClass, k -> Counter.builder("waybill.requests")
+                .description("GenerateWayBill requests by outcome")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .tag("error_class", errorClass)
+                .register(registry)).increment();
+    }
+
+    static String errorClass(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof GatewayUnavailableException) {
+                return "circuit_open";
+            }
+            if (t instanceof GatewayLimiterRejectedException) {
+                return "limiter_rejected";
+            }
+            if (t instanceof RestClientException) {
+                return GatewayResilience.classify(t).name().toLowerCase(Locale.ROOT);
+            }
+        }
+        return "internal";
+    }
+
+    /* ================= GAUGES ================= */
+
+    public <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value)
+                .description(description)
+                .register(registry);
+    }
+
+    public Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Exposes an existing monotonic count (an {@code AtomicLong} and the like) as a counter. */
+    public <T> void counter(String name, String description, T source, ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, source, count)
+                .description(description)
+                .register(registry);
+    }
+}
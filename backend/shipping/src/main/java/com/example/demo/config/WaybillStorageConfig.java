@@ -0,0 +1,146 @@
+package com.example.demo.config;
+
+import com.example.demo.repository.JournalStorageEngine;
+import com.example.demo.repository.JsonArrayStorageEngine;
+import com.example.demo.repository.PartitionedStorageEngine;
+import com.example.demo.repository.WaybillRecordCodec;
+import com.example.demo.repository.WaybillStorageEngine;
+import com.example.demo.repository.WriteBehindStorageEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@Configuration
+public class WaybillStorageConfig {
+
+    @Value("${waybill.storage.engine:partitioned}")
+    private String engine;
+
+    @Value("${waybill.storage.dir:data}")
+    private String dataDir;
+
+    @Value("${waybill.storage.format:ndjson}")
+    private String format;
+
+    @Value("${waybill.storage.fsync-batch-size:64}")
+    private int fsyncBatchSize;
+
+    @Value("${waybill.storage.fsync-interval-ms:200}")
+    private long fsyncIntervalMs;
+
+    @Value("${waybill.storage.compact-interval-ms:600000}")
+    private long compactIntervalMs;
+
+    @Value("${waybill.storage.compact-threshold:10000}")
+    private int compactThreshold;
+
+    @Value("${waybill.storage.cold-after-days:7}")
+    private int coldAfterDays;
+
+    @Value("${waybill.storage.maintenance-interval-ms:3600000}")
+    private long maintenanceIntervalMs;
+
+    @Value("${waybill.storage.write-behind.enabled:true}")
+    private boolean writeBehind;
+
+    @Value("${waybill.storage.write-behind.batch-size:500}")
+    private int writeBehindBatchSize;
+
+    @Value("${waybill.storage.write-behind.flush-interval-ms:50}")
+    private long writeBehindFlushIntervalMs;
+
+    @Value("${waybill.storage.write-behind.queue-capacity:10000}")
+    private int writeBehindQueueCapacity;
+
+    @Value("${waybill.storage.write-behind.enqueue-timeout-ms:10000}")
+    private long writeBehindEnqueueTimeoutMs;
+
+    @Value("${waybill.storage.write-behind.durable:false}")
+    private boolean writeBehindDurable;
+
+    /** Closed on shutdown (Closeable), which drains the write-behind queue. */
+    @Bean
+    public WaybillStorageEngine waybillStorageEngine(WaybillMetrics metrics) {
+        WaybillStorageEngine storage = createEngine();
+        if (!writeBehind) {
+            return storage;
+        }
+        WriteBehindStorageEngine writeBehindStorage = new WriteBehindStorageEngine(
+                storage,
+                writeBehindBatchSize,
+                writeBehindFlushIntervalMs,
+                writeBehindQueueCapacity,
+                writeBehindEnqueueTimeoutMs,
+                writeBehindDurable
+        );
+        metrics.gauge("waybill.storage.write.behind.backlog", "Waybills queued but not yet written",
+                writeBehindStorage, WriteBehindStorageEngine::backlog);
+        return writeBehindStorage;
+    }
+
+    private WaybillStorageEngine createEngine() {
+        ObjectMapper mapper = new ObjectMapper();
+        Path dir = Path.of(dataDir);
+        Path legacyFile = dir.resolve("waybills.json");
+
+        if ("json".equalsIgnoreCase(engine)) {
+            return new JsonArrayStorageEngine(legacyFile.toFile(), mapper);
+        }
+
+        WaybillRecordCodec codec = WaybillRecordCodec.of(format);
+        if ("journal".equalsIgnoreCase(engine)) {
+            Path journal = dir.resolve("waybills" + codec.extension());
+            requireNoOtherJournal(journal, codec);
+            return journal(journal, legacyFile, mapper, codec);
+        }
+
+        // Pre-partitioning history (waybills.ndjson, or waybills.json through it)
+        // is split into day partitions on first start. The legacy journal is
+        // only opened for that import, never when there is nothing to import.
+        WaybillRecordCodec ndjson = WaybillRecordCodec.of("ndjson");
+        Path legacyJournal = dir.resolve("waybills.ndjson");
+        boolean hasLegacy = Files.exists(legacyJournal) || Files.exists(legacyFile);
+        return new PartitionedStorageEngine(
+                dir.resolve("waybills"),
+                hasLegacy ? () -> journal(legacyJournal, legacyFile, mapper, ndjson) : null,
+                codec,
+                partition -> journal(partition, null, mapper, codec),
+                coldAfterDays,
+                maintenanceIntervalMs
+        );
+    }
+
+    /** A journal in another format would be silently ignored; refuse to start instead. */
+    private static void requireNoOtherJournal(Path journal, WaybillRecordCodec codec) {
+        if (Files.exists(journal)) {
+            return;
+        }
+        for (String other : WaybillRecordCodec.FORMATS) {
+            String extension = WaybillRecordCodec.of(other).extension();
+            Path existing = journal.resolveSibling("waybills" + extension);
+            if (!extension.equals(codec.extension()) && Files.exists(existing)) {
+                throw new IllegalStateException("Waybill history is stored in " + existing
+                        + " but waybill.storage.format selects " + codec.extension()
+                        + ". Convert it first (WaybillStorageConverter convert " + existing + " " + journal
+                        + ") or set waybill.storage.format back.");
+            }
+        }
+    }
+
+    private JournalStorageEngine journal(Path file, Path legacyFile, ObjectMapper mapper, WaybillRecordCodec codec) {
+        return new JournalStorageEngine(
+                file,
+                legacyFile,
+                mapper,
+                codec,
+                fsyncBatchSize,
+                fsyncIntervalMs,
+                compactIntervalMs,
+                compactThreshold
+        );
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.GatewayRateLimiter;
+import com.example.demo.service.GatewayResilience;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/bluedart/gateway")
+public class BluedartGatewayController {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final GatewayRateLimiter rateLimiter;
+    private final GatewayResilience resilience;
+
+    public BluedartGatewayController(
+            PoolingHttpClientConnectionManager connectionManager,
+            GatewayRateLimiter rateLimiter,
+            GatewayResilience resilience
+    ) {
+        this.connectionManager = connectionManager;
+        this.rateLimiter = rateLimiter;
+        this.resilience = resilience;
+    }
+
+    /** Connection pool occupancy for the Bluedart HTTP client. */
+    @GetMapping("/pool")
+    public Map<String, Object> poolStats() {
+        PoolStats stats = connectionManager.getTotalStats();
+
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("leased", stats.getLeased());
+        pool.put("pending", stats.getPending());
+        pool.put("available", stats.getAvailable());
+        pool.put("max", stats.getMax());
+        pool.put("routes", connectionManager.getRoutes().size());
+        return pool;
+    }
+
+    /** Current adaptive concurrency limit and time spent queued for it. */
+    @GetMapping("/limiter")
+    public Map<String, Object> limiterStats() {
+        return rateLimiter.stats();
+    }
+
+    /** Circuit state, retries and remaining retry budget. */
+    @GetMapping("/circuit")
+    public Map<String, Object> circuitStats() {
+        return resilience.stats();
+    }
+}
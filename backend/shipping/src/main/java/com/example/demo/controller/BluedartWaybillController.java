@@ -2,17 +2,23 @@ package com.example.demo.controller;
 
 import com.example.demo.repository.WaybillFileRepository;
 import com.example.demo.service.BluedartWaybillService;
-import com.example.demo.service.BulkWaybillExcelService;
+import com.example.demo.service.BulkIdempotencyGuard;
+import com.example.demo.service.BulkWaybillJobService;
 import com.example.demo.service.BulkWaybillTemplateService;
-import com.example.demo.service.BulkWaybillFileParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.multipart.MultipartFile; 
-import com.example.demo.dto.BulkWaybillResult;
-import com.example.demo.service.BulkWaybillExcelService;
+import com.example.demo.model.BulkJob;
 
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import com.example.demo.model.WaybillRecord;
-import com.example.demo.service.WaybillPdfService;
+import com.example.demo.service.WaybillLabelCache;
+import com.example.demo.service.WaybillPrerenderQueue;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
@@ -20,35 +26,40 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 
 @RestController
 @RequestMapping("/api/bluedart")
 @CrossOrigin(origins = "*")
 public class BluedartWaybillController {
 
+    private static final Logger log = LoggerFactory.getLogger(BluedartWaybillController.class);
+
     private final BluedartWaybillService waybillService;
     private final WaybillFileRepository repository;
-    private final WaybillPdfService pdfService;
+    private final WaybillLabelCache labelCache;
+    private final WaybillPrerenderQueue prerenderQueue;
     private final BulkWaybillTemplateService templateService;   
-    private final BulkWaybillFileParser bulkFileParser;
-    private final BulkWaybillExcelService excelService;
+    private final BulkWaybillJobService jobService;
+    private final BulkIdempotencyGuard idempotencyGuard;
     
     public BluedartWaybillController(BluedartWaybillService waybillService, WaybillFileRepository repository, 
-        WaybillPdfService pdfService,BulkWaybillTemplateService  templateService, BulkWaybillFileParser bulkFileParser, BulkWaybillExcelService excelService) {
+        WaybillLabelCache labelCache, WaybillPrerenderQueue prerenderQueue,
+        BulkWaybillTemplateService  templateService, BulkWaybillJobService jobService,
+        BulkIdempotencyGuard idempotencyGuard) {
         this.waybillService = waybillService;
         this.repository = repository;
-        this.pdfService = pdfService;
+        this.labelCache = labelCache;
+        this.prerenderQueue = prerenderQueue;
         this.templateService=templateService;
-        this.bulkFileParser=bulkFileParser;
-        this.excelService=excelService;
+        this.jobService=jobService;
+        this.idempotencyGuard = idempotencyGuard;
     }
 
     @PostMapping("/waybill")
 public Map<String, Object> createWaybill(@RequestBody Map<String, Object> request) {
 
-    System.out.println("✅ Backend received waybill request");
-    System.out.println(request);
+    // The payload itself is logged (sampled, redacted) by the service.
+    log.debug("Waybill request received");
 
     return waybillService.generateWaybill(request);
 }
@@ -60,16 +71,24 @@ public Map<String, Object> createWaybill(@RequestBody Map<String, Object> reques
 
 
     @GetMapping("/waybill/{awb}/pdf")
-    public ResponseEntity<byte[]> downloadPdf(@PathVariable String awb, @RequestParam(defaultValue = "A4") String size) throws Exception {
+    public ResponseEntity<byte[]> downloadPdf(@PathVariable String awb, @RequestParam(defaultValue = "A4") String size,
+            WebRequest webRequest) throws Exception {
 
         WaybillRecord record = repository.findByAwbNo(awb);
 if (record == null) {
     throw new RuntimeException("Waybill not found");
 }
 
-        byte[] pdf = pdfService.generatePdf(record, size);
+        // Reprints that already hold this label get a 304 without rendering.
+        String etag = WaybillLabelCache.etag(record, size);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        byte[] pdf = labelCache.get(record, size);
 
         return ResponseEntity.ok()
+                .eTag(etag)
                 .header(HttpHeaders.CONTENT_DISPOSITION,
                         "attachment; filename=waybill-" + awb + ".pdf")
                 .contentType(MediaType.APPLICATION_PDF)
@@ -77,31 +96,41 @@ if (record == null) {
     }
 
 
-    @PostMapping("/waybill/bulk")    
-    public ResponseEntity<Map<String,Object>> uploadBulkWaybill(
-        @RequestParam("file") MultipartFile file,
-        @RequestParam(defaultValue="A4") String size
-    ) throws Exception {
-        List<Map<String,Object>> requests=bulkFileParser.parse(file);
-        //List<WaybillRecord> records=waybillService.generateBulkWaybills(requests);
-        BulkWaybillResult result=waybillService.generateBulkWaybills(requests);
+    @GetMapping("/labels/cache")
+    public Map<String, Object> labelCacheStats() {
+        return labelCache.stats();
+    }
 
-        if(!result.getSuccessRecords().isEmpty()){
-            byte[] pdf=pdfService.generateBulkPdf(result.getSuccessRecords(), size);
-            Files.write(Path.of("data/bulk.pdf"), pdf);
-        }
+    @GetMapping("/labels/prerender")
+    public Map<String, Object> prerenderStats() {
+        return prerenderQueue.stats();
+    }
 
-        Files.write(Path.of("data/success.xlsx"),excelService.generateSuccessExcel(result.getSuccessRecords()));
+    @GetMapping("/waybill/bulk/idempotency")
+    public Map<String, Object> bulkIdempotencyStats() {
+        return idempotencyGuard.stats();
+    }
 
-        Files.write(Path.of("data/failure.xlsx"),excelService.generateFailureExcel(result.getFailures()));
 
-        Map<String,Object> response=new HashMap<>();
-        response.put("total", result.getTotal());
-        response.put("success", result.getSuccess());
-        response.put("failed",result.getFailed());
-        return ResponseEntity.ok(response);
+    @PostMapping("/waybill/bulk")    
+    public ResponseEntity<BulkJob> uploadBulkWaybill(
+        @RequestParam("file") MultipartFile file,
+        @RequestParam(defaultValue="A4") String size,
+        @RequestParam(defaultValue="xlsx") String reportFormat
+    ) throws Exception {
+        BulkJob job=jobService.submit(file, size, reportFormat);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
     }
 
+@GetMapping("/waybill/bulk/{jobId}")
+public ResponseEntity<BulkJob> getBulkJob(@PathVariable String jobId) {
+    BulkJob job=jobService.getJob(jobId);
+    if(job==null){
+        return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(job);
+}
+
 
 @GetMapping("/waybill/bulk/template")
 public ResponseEntity<byte[]> downloadTemplate() throws Exception {
@@ -115,27 +144,40 @@ public ResponseEntity<byte[]> downloadTemplate() throws Exception {
             .body(file);
 }
 
-@GetMapping("/waybill/bulk/success")
-public ResponseEntity<byte[]> downloadSuccessExcel() throws Exception {
-     return fileResponse("success.xlsx");
+@GetMapping("/waybill/bulk/{jobId}/success")
+public ResponseEntity<Resource> downloadSuccessReport(@PathVariable String jobId) throws Exception {
+     return fileResponse(jobId, BulkWaybillJobService.SUCCESS);
 }
 
-@GetMapping("/waybill/bulk/failure")
-public ResponseEntity<byte[]> downloadFailureExcel() throws Exception {
-    return fileResponse("failure.xlsx");
+@GetMapping("/waybill/bulk/{jobId}/failure")
+public ResponseEntity<Resource> downloadFailureReport(@PathVariable String jobId) throws Exception {
+    return fileResponse(jobId, BulkWaybillJobService.FAILURE);
 }
 
-@GetMapping("/waybill/bulk/pdf")
-public ResponseEntity<byte[]> downloadPdfBulk() throws Exception {
-    return fileResponse("bulk.pdf");
+@GetMapping("/waybill/bulk/{jobId}/pdf")
+public ResponseEntity<Resource> downloadPdfBulk(@PathVariable String jobId) throws Exception {
+    return fileResponse(jobId, BulkWaybillJobService.PDF);
 }
 
-private ResponseEntity<byte[]> fileResponse(String name) throws Exception {
+// Served straight from disk; large bulk PDFs are never loaded into memory.
+// Artifacts only exist once the job has completed; until then the client gets 409.
+private ResponseEntity<Resource> fileResponse(String jobId, String name) throws Exception {
 
-    byte[] data=Files.readAllBytes(Path.of("data/"+name));
+    BulkJob job=jobService.getJob(jobId);
+    if(job==null){
+        return ResponseEntity.notFound().build();
+    }
+    if(job.getState()!=BulkJob.State.COMPLETED){
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+    Path path=jobService.artifact(jobId, name);
+    if(path==null){
+        return ResponseEntity.notFound().build();
+    }
     return ResponseEntity.ok()
-    .header(HttpHeaders.CONTENT_DISPOSITION,"attachment;filename="+name)
-    .body(data);
+    .header(HttpHeaders.CONTENT_DISPOSITION,"attachment;filename="+path.getFileName())
+    .contentLength(Files.size(path))
+    .body(new FileSystemResource(path));
 }
 
 }
\ No newline at end of file
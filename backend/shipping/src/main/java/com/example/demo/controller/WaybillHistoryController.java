@@ -1,17 +1,31 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.WaybillHistoryFilter;
+import com.example.demo.dto.WaybillPage;
+import com.example.demo.dto.WaybillSummary;
 import com.example.demo.model.WaybillRecord;
 import com.example.demo.repository.WaybillFileRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/waybills")
 @CrossOrigin
 public class WaybillHistoryController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final WaybillFileRepository repository;
+    private final ObjectMapper mapper = new ObjectMapper();
 
     public WaybillHistoryController(WaybillFileRepository repository) {
         this.repository = repository;
@@ -21,4 +35,64 @@ public class WaybillHistoryController {
     public List<WaybillRecord> getAll() {
         return repository.findAll();
     }
+
+    @GetMapping("/reference/{creditReferenceNo}")
+    public List<WaybillRecord> getByCreditReference(@PathVariable String creditReferenceNo) {
+        return repository.findByCreditReferenceNo(creditReferenceNo);
+    }
+
+    /**
+     * Newest-first page of history. {@code view=summary} drops the raw
+     * request / response payloads.
+     */
+    @GetMapping("/page")
+    public WaybillPage<?> getPage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String creditReferenceNo,
+            @RequestParam(required = false) String productCode,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "full") String view
+    ) {
+        WaybillHistoryFilter filter = new WaybillHistoryFilter(from, to, creditReferenceNo, productCode);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        WaybillPage<WaybillRecord> page = repository.findPage(filter, cursor, pageSize);
+        return isSummary(view) ? page.map(WaybillSummary::of) : page;
+    }
+
+    /** Oldest-first NDJSON export, written one record at a time. */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String creditReferenceNo,
+            @RequestParam(required = false) String productCode,
+            @RequestParam(defaultValue = "full") String view
+    ) {
+        WaybillHistoryFilter filter = new WaybillHistoryFilter(from, to, creditReferenceNo, productCode);
+        boolean summary = isSummary(view);
+
+        StreamingResponseBody body = out -> {
+            try (Stream<WaybillRecord> records = repository.stream(filter)) {
+                Iterator<WaybillRecord> it = records.iterator();
+                while (it.hasNext()) {
+                    WaybillRecord record = it.next();
+                    // writeValueAsBytes instead of writeValue(out, ...): the latter closes the response stream.
+                    out.write(mapper.writeValueAsBytes(summary ? WaybillSummary.of(record) : record));
+                    out.write('\n');
+                }
+            }
+            out.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private boolean isSummary(String view) {
+        return "summary".equalsIgnoreCase(view);
+    }
 }
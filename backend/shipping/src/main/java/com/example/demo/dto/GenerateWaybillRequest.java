@@ -0,0 +1,271 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Typed GenerateWayBill payload for bulk rows.
+ *
+ * Only the per-row values are stored on each instance. Constant sections
+ * (Profile, Commodity, Dimensions) are shared instances and constant
+ * scalar fields are emitted from literal getters, so a row costs a handful
+ * of small objects instead of eight nested HashMaps. The JSON shape is the
+ * same as the map built by the old BulkWaybillFileParser.
+ */
+public class GenerateWaybillRequest {
+
+    private final ApiProfile profile;
+
+    @JsonProperty("Request")
+    private final Request request;
+
+    public GenerateWaybillRequest(ApiProfile profile, Shipper shipper, Consignee consignee, Services services) {
+        this.profile = profile;
+        this.request = new Request(shipper, consignee, services);
+    }
+
+    @JsonProperty("Profile")
+    public ApiProfile getProfile() {
+        return profile;
+    }
+
+    /** Not a bean getter, so it never shows up in the payload. */
+    public String creditReferenceNo() {
+        return request.services.creditReferenceNo;
+    }
+
+    /* ================= REQUEST ================= */
+
+    public static class Request {
+
+        @JsonProperty("Shipper")
+        private final Shipper shipper;
+
+        @JsonProperty("Consignee")
+        private final Consignee consignee;
+
+        @JsonProperty("Services")
+        private final Services services;
+
+        private Request(Shipper shipper, Consignee consignee, Services services) {
+            this.shipper = shipper;
+            this.consignee = consignee;
+            this.services = services;
+        }
+    }
+
+    /* ================= SHIPPER ================= */
+
+    public static class Shipper {
+
+        @JsonProperty("CustomerCode")
+        private final String customerCode;
+
+        @JsonProperty("CustomerName")
+        private final String customerName;
+
+        @JsonProperty("CustomerMobile")
+        private final String customerMobile;
+
+        @JsonProperty("CustomerAddress1")
+        private final String customerAddress1;
+
+        @JsonProperty("CustomerPincode")
+        private final String customerPincode;
+
+        @JsonProperty("OriginArea")
+        private final String originArea;
+
+        public Shipper(String customerCode, String customerName, String customerMobile,
+                       String customerAddress1, String customerPincode, String originArea) {
+            this.customerCode = customerCode;
+            this.customerName = customerName;
+            this.customerMobile = customerMobile;
+            this.customerAddress1 = customerAddress1;
+            this.customerPincode = customerPincode;
+            this.originArea = originArea;
+        }
+
+        /* ---------- Constants ---------- */
+        @JsonProperty("CustomerAddress2") public String getCustomerAddress2() { return ""; }
+        @JsonProperty("CustomerAddress3") public String getCustomerAddress3() { return ""; }
+        @JsonProperty("CustomerAddressinfo") public String getCustomerAddressinfo() { return ""; }
+        @JsonProperty("CustomerTelephone") public String getCustomerTelephone() { return ""; }
+        @JsonProperty("CustomerEmailID") public String getCustomerEmailID() { return "test@bd.com"; }
+        @JsonProperty("IsToPayCustomer") public boolean getIsToPayCustomer() { return true; }
+        @JsonProperty("Sender") public String getSender() { return "BulkUpload"; }
+        @JsonProperty("VendorCode") public String getVendorCode() { return ""; }
+    }
+
+    /* ================= CONSIGNEE ================= */
+
+    public static class Consignee {
+
+        @JsonProperty("ConsigneeName")
+        private final String consigneeName;
+
+        @JsonProperty("ConsigneeMobile")
+        private final String consigneeMobile;
+
+        @JsonProperty("ConsigneeAddress1")
+        private final String consigneeAddress1;
+
+        @JsonProperty("ConsigneePincode")
+        private final String consigneePincode;
+
+        public Consignee(String consigneeName, String consigneeMobile,
+                         String consigneeAddress1, String consigneePincode) {
+            this.consigneeName = consigneeName;
+            this.consigneeMobile = consigneeMobile;
+            this.consigneeAddress1 = consigneeAddress1;
+            this.consigneePincode = consigneePincode;
+        }
+
+        /* ---------- Constants ---------- */
+        @JsonProperty("ConsigneeAddress2") public String getConsigneeAddress2() { return ""; }
+        @JsonProperty("ConsigneeAddress3") public String getConsigneeAddress3() { return ""; }
+        @JsonProperty("ConsigneeAddressinfo") public String getConsigneeAddressinfo() { return ""; }
+        @JsonProperty("ConsigneeTelephone") public String getConsigneeTelephone() { return ""; }
+        @JsonProperty("ConsigneeEmailID") public String getConsigneeEmailID() { return "test@bd.com"; }
+        @JsonProperty("ConsigneeAttention") public String getConsigneeAttention() { return "Bulk"; }
+        @JsonProperty("AvailableDays") public String getAvailableDays() { return ""; }
+        @JsonProperty("AvailableTiming") public String getAvailableTiming() { return ""; }
+    }
+
+    /* ================= SERVICES ================= */
+
+    public static class Services {
+
+        private static final Commodity COMMODITY = new Commodity();
+        private static final List<Dimension> DIMENSIONS = List.of(new Dimension());
+
+        @JsonProperty("ProductCode")
+        private final String productCode;
+
+        @JsonProperty("SubProductCode")
+        private final String subProductCode;
+
+        @JsonProperty("ActualWeight")
+        private final double actualWeight;
+
+        @JsonProperty("DeclaredValue")
+        private final double declaredValue;
+
+        @JsonProperty("PieceCount")
+        private final int pieceCount;
+
+        @JsonProperty("CollectableAmount")
+        private final double collectableAmount;
+
+        @JsonProperty("CreditReferenceNo")
+        private final String creditReferenceNo;
+
+        @JsonProperty("PickupDate")
+        private final String pickupDate;
+
+        @JsonProperty("itemdtl")
+        private final List<Item> items;
+
+        public Services(String productCode, String subProductCode, double actualWeight,
+                        double declaredValue, int pieceCount, double collectableAmount,
+                        String creditReferenceNo, String pickupDate, Item item) {
+            this.productCode = productCode;
+            this.subProductCode = subProductCode;
+            this.actualWeight = actualWeight;
+            this.declaredValue = declaredValue;
+            this.pieceCount = pieceCount;
+            this.collectableAmount = collectableAmount;
+            this.creditReferenceNo = creditReferenceNo;
+            this.pickupDate = pickupDate;
+            this.items = List.of(item);
+        }
+
+        @JsonProperty("ItemCount") public int getItemCount() { return pieceCount; }
+        @JsonProperty("Commodity") public Commodity getCommodity() { return COMMODITY; }
+        @JsonProperty("Dimensions") public List<Dimension> getDimensions() { return DIMENSIONS; }
+
+        /* ---------- Constants ---------- */
+        @JsonProperty("AWBNo") public String getAWBNo() { return ""; }
+        @JsonProperty("ProductType") public int getProductType() { return 1; }
+        @JsonProperty("CreditReferenceNo2") public String getCreditReferenceNo2() { return ""; }
+        @JsonProperty("CreditReferenceNo3") public String getCreditReferenceNo3() { return ""; }
+        @JsonProperty("PickupTime") public String getPickupTime() { return "1600"; }
+        @JsonProperty("PickupMode") public String getPickupMode() { return ""; }
+        @JsonProperty("PickupType") public String getPickupType() { return ""; }
+        @JsonProperty("RegisterPickup") public boolean getRegisterPickup() { return true; }
+        @JsonProperty("PDFOutputNotRequired") public boolean getPDFOutputNotRequired() { return true; }
+        @JsonProperty("PackType") public String getPackType() { return ""; }
+        @JsonProperty("ParcelShopCode") public String getParcelShopCode() { return ""; }
+        @JsonProperty("PayableAt") public String getPayableAt() { return ""; }
+        @JsonProperty("IsReversePickup") public boolean getIsReversePickup() { return true; }
+        @JsonProperty("IsPartialPickup") public boolean getIsPartialPickup() { return false; }
+        @JsonProperty("IsForcePickup") public boolean getIsForcePickup() { return false; }
+        @JsonProperty("IsDedicatedDeliveryNetwork") public boolean getIsDedicatedDeliveryNetwork() { return false; }
+        @JsonProperty("IsDutyTaxPaidByShipper") public boolean getIsDutyTaxPaidByShipper() { return false; }
+        @JsonProperty("TotalCashPaytoCustomer") public int getTotalCashPaytoCustomer() { return 0; }
+        @JsonProperty("Officecutofftime") public String getOfficecutofftime() { return ""; }
+        @JsonProperty("PreferredPickupTimeSlot") public String getPreferredPickupTimeSlot() { return ""; }
+        @JsonProperty("DeliveryTimeSlot") public String getDeliveryTimeSlot() { return ""; }
+        @JsonProperty("ProductFeature") public String getProductFeature() { return ""; }
+        @JsonProperty("SpecialInstruction") public String getSpecialInstruction() { return ""; }
+        @JsonProperty("noOfDCGiven") public int getNoOfDCGiven() { return 0; }
+    }
+
+    /* ================= ITEM ================= */
+
+    public static class Item {
+
+        @JsonProperty("ItemName")
+        private final String itemName;
+
+        @JsonProperty("ItemValue")
+        private final double itemValue;
+
+        @JsonProperty("Itemquantity")
+        private final int itemQuantity;
+
+        @JsonProperty("InvoiceDate")
+        private final String invoiceDate;
+
+        public Item(String itemName, double itemValue, int itemQuantity, String invoiceDate) {
+            this.itemName = itemName;
+            this.itemValue = itemValue;
+            this.itemQuantity = itemQuantity;
+            this.invoiceDate = invoiceDate;
+        }
+
+        @JsonProperty("TotalValue") public double getTotalValue() { return itemValue; }
+        @JsonProperty("InvoiceNumber") public String getInvoiceNumber() { return ""; }
+    }
+
+    /* ================= SHARED CONSTANT SECTIONS ================= */
+
+    public static class Commodity {
+        @JsonProperty("CommodityDetail1") public String getCommodityDetail1() { return "General Goods"; }
+        @JsonProperty("CommodityDetail2") public String getCommodityDetail2() { return ""; }
+        @JsonProperty("CommodityDetail3") public String getCommodityDetail3() { return ""; }
+    }
+
+    public static class Dimension {
+        @JsonProperty("Length") public double getLength() { return 10.0; }
+        @JsonProperty("Breadth") public double getBreadth() { return 10.0; }
+        @JsonProperty("Height") public double getHeight() { return 10.0; }
+        @JsonProperty("Count") public int getCount() { return 1; }
+    }
+
+    /** Account credentials; one instance, built from configuration, is shared by every row. */
+    public static class ApiProfile {
+        private final String loginId;
+        private final String licenceKey;
+
+        public ApiProfile(String loginId, String licenceKey) {
+            this.loginId = loginId;
+            this.licenceKey = licenceKey;
+        }
+
+        @JsonProperty("LoginID") public String getLoginID() { return loginId; }
+        @JsonProperty("LicenceKey") public String getLicenceKey() { return licenceKey; }
+        @JsonProperty("Api_type") public String getApi_type() { return "S"; }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.WaybillRecord;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Optional filters for the waybill history. Null fields match everything.
+ * Dates are inclusive and compared against the record's ISO createdAt.
+ */
+public class WaybillHistoryFilter {
+
+    public static final WaybillHistoryFilter NONE = new WaybillHistoryFilter(null, null, null, null);
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String creditReferenceNo;
+    private final String productCode;
+
+    // ISO_LOCAL_DATE_TIME strings sort chronologically, so bounds are plain string compares.
+    private final String lowerBound;
+    private final String upperBound;
+
+    public WaybillHistoryFilter(LocalDate from, LocalDate to, String creditReferenceNo, String productCode) {
+        this.from = from;
+        this.to = to;
+        this.creditReferenceNo = blankToNull(creditReferenceNo);
+        this.productCode = blankToNull(productCode);
+        this.lowerBound = from == null ? null : from.toString();
+        this.upperBound = to == null ? null : to.plusDays(1).toString();
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public String getCreditReferenceNo() {
+        return creditReferenceNo;
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+
+    public boolean matches(WaybillRecord record) {
+        String createdAt = record.getCreatedAt();
+        if (lowerBound != null && (createdAt == null || createdAt.compareTo(lowerBound) < 0)) {
+            return false;
+        }
+        if (upperBound != null && (createdAt == null || createdAt.compareTo(upperBound) >= 0)) {
+            return false;
+        }
+        if (creditReferenceNo != null && !creditReferenceNo.equals(record.getCreditReferenceNo())) {
+            return false;
+        }
+        return productCode == null || productCode.equals(productCodeOf(record));
+    }
+
+    /** Request.Services.ProductCode of the stored payload, or null. */
+    @SuppressWarnings("unchecked")
+    public static String productCodeOf(WaybillRecord record) {
+        try {
+            Map<String, Object> req = (Map<String, Object>) record.getRequest().get("Request");
+            Object code = ((Map<String, Object>) req.get("Services")).get("ProductCode");
+            return code == null ? null : code.toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
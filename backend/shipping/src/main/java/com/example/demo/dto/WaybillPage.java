@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One page of waybill history, newest first. Pass {@code nextCursor} back
+ * as {@code cursor} to get the following page; it is null on the last page.
+ */
+public class WaybillPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public WaybillPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public <R> WaybillPage<R> map(Function<T, R> mapper) {
+        return new WaybillPage<>(items.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
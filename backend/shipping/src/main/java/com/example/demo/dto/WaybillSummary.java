@@ -0,0 +1,44 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.WaybillRecord;
+
+/** History row without the raw request / response payloads. */
+public class WaybillSummary {
+
+    private final String awbNo;
+    private final String creditReferenceNo;
+    private final String createdAt;
+    private final String productCode;
+
+    public WaybillSummary(String awbNo, String creditReferenceNo, String createdAt, String productCode) {
+        this.awbNo = awbNo;
+        this.creditReferenceNo = creditReferenceNo;
+        this.createdAt = createdAt;
+        this.productCode = productCode;
+    }
+
+    public static WaybillSummary of(WaybillRecord record) {
+        return new WaybillSummary(
+                record.getAwbNo(),
+                record.getCreditReferenceNo(),
+                record.getCreatedAt(),
+                WaybillHistoryFilter.productCodeOf(record)
+        );
+    }
+
+    public String getAwbNo() {
+        return awbNo;
+    }
+
+    public String getCreditReferenceNo() {
+        return creditReferenceNo;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getProductCode() {
+        return productCode;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demo.exception;
+
+/**
+ * Thrown without calling Bluedart when the client-side rate or concurrency
+ * limit gave no slot within the acquire timeout.
+ */
+public class GatewayLimiterRejectedException extends RuntimeException {
+
+    public GatewayLimiterRejectedException(String message) {
+        super(message);
+    }
+}
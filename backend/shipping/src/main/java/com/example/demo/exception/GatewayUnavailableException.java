@@ -0,0 +1,18 @@
+package com.example.demo.exception;
+
+/**
+ * Thrown without calling Bluedart while the gateway circuit is open.
+ */
+public class GatewayUnavailableException extends RuntimeException {
+
+    private final long retryAfterMs;
+
+    public GatewayUnavailableException(long retryAfterMs) {
+        super("Bluedart gateway unavailable (circuit open), retry after " + (retryAfterMs + 999) / 1000 + "s");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -24,6 +25,31 @@ public class GlobalExceptionHandler {
                 .body(error);
     }
 
+    @ExceptionHandler(GatewayUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> handleGatewayUnavailable(GatewayUnavailableException ex) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("message", "Bluedart gateway unavailable");
+        error.put("details", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((ex.getRetryAfterMs() + 999) / 1000))
+                .body(error);
+    }
+
+    @ExceptionHandler(GatewayLimiterRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleLimiterRejected(GatewayLimiterRejectedException ex) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("message", "Bluedart gateway busy");
+        error.put("details", ex.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(error);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericError(Exception ex) {
         Map<String, Object> error = new HashMap<>();
@@ -0,0 +1,114 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Progress of one asynchronous bulk upload. Counters are updated by worker threads. */
+public class BulkJob {
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String jobId;
+    private final String size;
+    private final String reportFormat;
+    private final String createdAt;
+
+    private volatile State state = State.QUEUED;
+    private volatile String error;
+    private volatile String completedAt;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger success = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @JsonIgnore
+    private final long createdAtMillis = System.currentTimeMillis();
+
+    public BulkJob(String jobId, String size, String reportFormat) {
+        this.jobId = jobId;
+        this.size = size;
+        this.reportFormat = reportFormat;
+        this.createdAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getSize() {
+        return size;
+    }
+
+    /** File extension of the success / failure reports, {@code xlsx} or {@code csv}. */
+    public String getReportFormat() {
+        return reportFormat;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getCompletedAt() {
+        return completedAt;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /** Rows read from the upload so far; final once the job has completed. */
+    public int getTotal() {
+        return total.get();
+    }
+
+    public int getProcessed() {
+        return success.get() + failed.get();
+    }
+
+    public int getSuccess() {
+        return success.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @JsonIgnore
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public void start() {
+        this.state = State.RUNNING;
+    }
+
+    public void rowSubmitted() {
+        total.incrementAndGet();
+    }
+
+    public void rowSucceeded() {
+        success.incrementAndGet();
+    }
+
+    public void rowFailed() {
+        failed.incrementAndGet();
+    }
+
+    public void complete() {
+        this.completedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        this.state = State.COMPLETED;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        this.completedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        this.state = State.FAILED;
+    }
+}
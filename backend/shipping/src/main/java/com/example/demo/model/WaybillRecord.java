@@ -48,4 +48,13 @@ public class WaybillRecord {
     public Map<String, Object> getResponse() {
         return response;
     }
+
+    /**
+     * Creation day ({@code yyyy-MM-dd}) used to partition and order history;
+     * records without a createdAt sort before all others. Not a bean getter,
+     * so it is never persisted.
+     */
+    public String createdDay() {
+        return createdAt != null && createdAt.length() >= 10 ? createdAt.substring(0, 10) : "0000-00-00";
+    }
 }
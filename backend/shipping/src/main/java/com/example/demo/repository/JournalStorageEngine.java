@@ -0,0 +1,381 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only journal of framed records; the encoding and framing come
+ * from a {@link WaybillRecordCodec} (one JSON document per line by default).
+ *
+ * Saves cost O(record) instead of O(history). fsync is batched (every
+ * {@code fsyncBatchSize} appends or {@code fsyncIntervalMs}, whichever
+ * comes first) and a background task compacts the journal, dropping
+ * superseded AWBs and torn frames left by a crash.
+ */
+public class JournalStorageEngine implements WaybillStorageEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalStorageEngine.class);
+
+    private final Path journal;
+    private final Path legacyFile;
+    private final ObjectMapper mapper;
+    private final WaybillRecordCodec codec;
+    private final int fsyncBatchSize;
+    private final int compactThreshold;
+
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService scheduler;
+
+    private FileChannel channel;
+    private int unsyncedAppends;
+    private int appendsSinceCompaction;
+
+    public JournalStorageEngine(
+            Path journal,
+            Path legacyFile,
+            ObjectMapper mapper,
+            WaybillRecordCodec codec,
+            int fsyncBatchSize,
+            long fsyncIntervalMs,
+            long compactIntervalMs,
+            int compactThreshold
+    ) {
+        this.journal = journal;
+        this.legacyFile = legacyFile;
+        this.mapper = mapper;
+        this.codec = codec;
+        this.fsyncBatchSize = Math.max(1, fsyncBatchSize);
+        this.compactThreshold = Math.max(1, compactThreshold);
+
+        try {
+            Files.createDirectories(journal.toAbsolutePath().getParent());
+            migrateLegacyFile();
+            truncateTornTail();
+            this.channel = openForAppend();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open waybill journal " + journal, e);
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "waybill-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::syncQuietly,
+                fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::compactQuietly,
+                compactIntervalMs, compactIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /* ================= READ ================= */
+
+    @Override
+    public List<WaybillRecord> loadAll() {
+        List<WaybillRecord> records = new ArrayList<>();
+        if (!Files.exists(journal)) {
+            return records;
+        }
+        try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ)) {
+            forEachFrame(in, in.size(), frame -> {
+                WaybillRecord record = decode(frame);
+                if (record != null) {
+                    records.add(record);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read waybill journal", e);
+        }
+        return records;
+    }
+
+    /* ================= WRITE ================= */
+
+    @Override
+    public void append(WaybillRecord record) {
+        appendAll(List.of(record));
+    }
+
+    @Override
+    public void appendAll(List<WaybillRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        // Serialize outside the lock; only the channel write is serialized.
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            for (WaybillRecord record : records) {
+                codec.writeFrame(buffer, codec.encode(record));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize waybill", e);
+        }
+
+        synchronized (writeLock) {
+            try {
+                writeFully(channel, ByteBuffer.wrap(buffer.toByteArray()));
+                unsyncedAppends += records.size();
+                appendsSinceCompaction += records.size();
+                if (unsyncedAppends >= fsyncBatchSize) {
+                    sync();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to save waybill", e);
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        if (unsyncedAppends > 0) {
+            channel.force(false);
+            unsyncedAppends = 0;
+        }
+    }
+
+    @Override
+    public void force() {
+        synchronized (writeLock) {
+            try {
+                sync();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to fsync waybill journal", e);
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        synchronized (writeLock) {
+            try {
+                sync();
+            } catch (IOException e) {
+                log.atWarn()
+                        .addKeyValue("journal", journal)
+                        .log("Waybill journal fsync failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /* ================= COMPACTION ================= */
+
+    /**
+     * Rewrites the journal keeping only the latest frame per AWB.
+     * The bulk of the work runs without the write lock; writers are only
+     * blocked while the tail appended during compaction is copied over.
+     */
+    void compact() throws IOException {
+        long snapshot;
+        synchronized (writeLock) {
+            if (appendsSinceCompaction < compactThreshold) {
+                return;
+            }
+            sync();
+            snapshot = channel.size();
+            appendsSinceCompaction = 0;
+        }
+
+        // Pass 1: find the last occurrence of each AWB.
+        Map<String, Integer> latestLine = new HashMap<>();
+        int[] lineNo = {0};
+        int[] dropped = {0};
+        try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ)) {
+            forEachFrame(in, snapshot, frame -> {
+                WaybillRecord record = decode(frame);
+                if (record == null) {
+                    dropped[0]++;
+                } else if (record.getAwbNo() != null
+                        && latestLine.put(record.getAwbNo(), lineNo[0]) != null) {
+                    dropped[0]++;
+                }
+                lineNo[0]++;
+            });
+        }
+
+        if (dropped[0] == 0) {
+            return;
+        }
+
+        // Pass 2: copy surviving frames into a fresh file.
+        Path tmp = journal.resolveSibling(journal.getFileName() + ".compact");
+        try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            int[] current = {0};
+            IOException[] failure = {null};
+            ByteArrayOutputStream framed = new ByteArrayOutputStream();
+            forEachFrame(in, snapshot, frame -> {
+                int index = current[0]++;
+                if (failure[0] != null) {
+                    return;
+                }
+                WaybillRecord record = decode(frame);
+                if (record == null) {
+                    return;
+                }
+                if (record.getAwbNo() != null && latestLine.get(record.getAwbNo()) != index) {
+                    return;
+                }
+                try {
+                    framed.reset();
+                    codec.writeFrame(framed, frame);
+                    writeFully(out, ByteBuffer.wrap(framed.toByteArray()));
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+
+            synchronized (writeLock) {
+                // Bring over whatever was appended while we were compacting.
+                long end = channel.size();
+                long position = snapshot;
+                while (position < end) {
+                    position += in.transferTo(position, end - position, out);
+                }
+                out.force(true);
+
+                channel.close();
+                Files.move(tmp, journal,
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = openForAppend();
+                unsyncedAppends = 0;
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.atWarn()
+                    .addKeyValue("journal", journal)
+                    .setCause(e)
+                    .log("Waybill journal compaction failed");
+        }
+    }
+
+    /* ================= STARTUP ================= */
+
+    /**
+     * One-time import of the old pretty-printed {@code waybills.json} array.
+     * The legacy file is renamed to {@code *.migrated} afterwards so the
+     * import never runs twice.
+     */
+    private void migrateLegacyFile() throws IOException {
+        if (legacyFile == null || !Files.exists(legacyFile)) {
+            return;
+        }
+        if (Files.exists(journal) && Files.size(journal) > 0) {
+            return;
+        }
+
+        List<WaybillRecord> legacy = Files.size(legacyFile) == 0
+                ? List.of()
+                : mapper.readValue(legacyFile.toFile(), new TypeReference<List<WaybillRecord>>() {});
+
+        Path tmp = journal.resolveSibling(journal.getFileName() + ".migrate");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream framed = new ByteArrayOutputStream();
+            for (WaybillRecord record : legacy) {
+                codec.writeFrame(framed, codec.encode(record));
+            }
+            writeFully(out, ByteBuffer.wrap(framed.toByteArray()));
+            out.force(true);
+        }
+        Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        log.atInfo()
+                .addKeyValue("records", legacy.size())
+                .addKeyValue("from", legacyFile)
+                .addKeyValue("to", journal)
+                .log("Migrated waybill history to the journal");
+    }
+
+    /** Drops a half-written last frame left behind by a crash mid-append. */
+    private void truncateTornTail() throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            long complete = forEachFrame(ch, size, frame -> { });
+            if (complete < size) {
+                ch.truncate(complete);
+                ch.force(true);
+            }
+        }
+    }
+
+    /* ================= HELPERS ================= */
+
+    private FileChannel openForAppend() throws IOException {
+        return FileChannel.open(journal,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private WaybillRecord decode(byte[] frame) {
+        try {
+            return codec.decode(frame);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            ch.write(buffer);
+        }
+    }
+
+    /** Streams the complete frames in the first {@code limit} bytes of the channel. */
+    private long forEachFrame(FileChannel ch, long limit, Consumer<byte[]> consumer) throws IOException {
+        InputStream in = new BufferedInputStream(Channels.newInputStream(ch.position(0)), 64 * 1024);
+        return codec.forEachFrame(in, limit, consumer);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        synchronized (writeLock) {
+            try {
+                sync();
+                channel.close();
+            } catch (IOException e) {
+                log.atError()
+                        .addKeyValue("journal", journal)
+                        .setCause(e)
+                        .log("Failed to close waybill journal");
+            }
+        }
+    }
+}
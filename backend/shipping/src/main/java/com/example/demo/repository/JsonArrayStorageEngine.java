@@ -0,0 +1,64 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Legacy layout: the whole history as one pretty-printed JSON array.
+ * Every append rewrites the file, so it is only kept for compatibility
+ * ({@code waybill.storage.engine=json}).
+ */
+public class JsonArrayStorageEngine implements WaybillStorageEngine {
+
+    private final File file;
+    private final ObjectMapper mapper;
+
+    public JsonArrayStorageEngine(File file, ObjectMapper mapper) {
+        this.file = file;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public synchronized List<WaybillRecord> loadAll() {
+        try {
+            if (!file.exists() || file.length() == 0) {
+                return new ArrayList<>();
+            }
+            return mapper.readValue(file, new TypeReference<List<WaybillRecord>>() {});
+        } catch (Exception e) {
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void append(WaybillRecord record) {
+        appendAll(List.of(record));
+    }
+
+    @Override
+    public synchronized void appendAll(List<WaybillRecord> records) {
+        try {
+            if (!file.getParentFile().exists()) {
+                file.getParentFile().mkdirs();
+            }
+
+            List<WaybillRecord> existing =
+                    file.exists() && file.length() > 0
+                            ? mapper.readValue(file, new TypeReference<List<WaybillRecord>>() {})
+                            : new ArrayList<>();
+
+            existing.addAll(records);
+
+            mapper.writerWithDefaultPrettyPrinter()
+                  .writeValue(file, existing);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to save waybills", e);
+        }
+    }
+}
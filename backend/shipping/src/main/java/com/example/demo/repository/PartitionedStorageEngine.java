@@ -0,0 +1,391 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One journal per creation day ({@code yyyy-MM-dd.ndjson}, or the suffix of
+ * the configured {@link WaybillRecordCodec}), keyed by the date part of
+ * {@link WaybillRecord#getCreatedAt()}.
+ *
+ * Only partitions that are still being written are open, each as a
+ * {@link JournalStorageEngine}, so appends, fsync and compaction only ever
+ * touch one small file. Partitions older than {@code coldAfterDays} are
+ * gzipped in the background; a late append to a cold day goes to a fresh
+ * plain file, which is folded into the archive as an extra gzip member on
+ * the next pass.
+ *
+ * {@link #loadAll} still replays every partition, cold ones included (see
+ * {@link WaybillFileRepository}); partitions bound the cost of appends,
+ * fsync, compaction and compression, not of startup.
+ */
+public class PartitionedStorageEngine implements WaybillStorageEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedStorageEngine.class);
+
+    /** {@code yyyy-MM-dd<extension>[.gz]}; group 1 is the codec extension. */
+    private static final Pattern PARTITION = Pattern.compile("\\d{4}-\\d{2}-\\d{2}(\\.[A-Za-z0-9]+)(\\.gz)?");
+
+    private final Path dir;
+    private final WaybillRecordCodec codec;
+    private final String plainSuffix;
+    private final String gzipSuffix;
+    private final Function<Path, JournalStorageEngine> journalFactory;
+    private final int coldAfterDays;
+
+    /** Open partitions by day, guarded by itself. */
+    private final Map<String, JournalStorageEngine> open = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param legacy opens the engine holding pre-partitioning history, or null
+     *               if there is none; only called, and its history replayed
+     *               into partitions, when the partition directory is empty
+     */
+    public PartitionedStorageEngine(
+            Path dir,
+            Supplier<? extends WaybillStorageEngine> legacy,
+            WaybillRecordCodec codec,
+            Function<Path, JournalStorageEngine> journalFactory,
+            int coldAfterDays,
+            long maintenanceIntervalMs
+    ) {
+        this.dir = dir;
+        this.codec = codec;
+        this.plainSuffix = codec.extension();
+        this.gzipSuffix = codec.extension() + ".gz";
+        this.journalFactory = journalFactory;
+        this.coldAfterDays = Math.max(1, coldAfterDays);
+
+        try {
+            migrate(legacy);
+            Files.createDirectories(dir);
+            requireSingleFormat();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open waybill partitions in " + dir, e);
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "waybill-partitions");
+            t.setDaemon(true);
+            return t;
+        });
+        // The first pass waits a full interval, so it does not compete with the
+        // startup replay; loadDay and compress also exclude each other.
+        scheduler.scheduleWithFixedDelay(this::maintainQuietly,
+                maintenanceIntervalMs, maintenanceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /* ================= READ ================= */
+
+    /** Replays every partition, oldest day first. */
+    @Override
+    public List<WaybillRecord> loadAll() {
+        List<WaybillRecord> records = new ArrayList<>();
+        for (String day : days()) {
+            records.addAll(loadDay(day));
+        }
+        return records;
+    }
+
+    private List<WaybillRecord> loadDay(String day) {
+        List<WaybillRecord> records = new ArrayList<>();
+        // Under the map lock, like compress(), so a day is never read while its
+        // plain file is being folded into the archive and deleted.
+        synchronized (open) {
+            readDay(day, records);
+        }
+        return records;
+    }
+
+    private void readDay(String day, List<WaybillRecord> records) {
+        try {
+            Path archive = dir.resolve(day + gzipSuffix);
+            if (Files.exists(archive)) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(archive), 64 * 1024)) {
+                    readFrames(in, records);
+                }
+            }
+            Path plain = dir.resolve(day + plainSuffix);
+            if (Files.exists(plain)) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(plain), 64 * 1024)) {
+                    readFrames(in, records);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read waybill partition " + day, e);
+        }
+    }
+
+    private void readFrames(InputStream in, List<WaybillRecord> records) throws IOException {
+        codec.forEachFrame(in, Long.MAX_VALUE, frame -> {
+            try {
+                records.add(codec.decode(frame));
+            } catch (IOException e) {
+                // Unreadable frame; compaction drops these from the journal too.
+            }
+        });
+    }
+
+    /** Days that have a partition on disk, ascending. */
+    private TreeSet<String> days() {
+        TreeSet<String> days = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(gzipSuffix)) {
+                    days.add(name.substring(0, name.length() - gzipSuffix.length()));
+                } else if (name.endsWith(plainSuffix)) {
+                    days.add(name.substring(0, name.length() - plainSuffix.length()));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list waybill partitions in " + dir, e);
+        }
+        return days;
+    }
+
+    /* ================= WRITE ================= */
+
+    @Override
+    public void append(WaybillRecord record) {
+        appendAll(List.of(record));
+    }
+
+    @Override
+    public void appendAll(List<WaybillRecord> records) {
+        // Keep each day's batch together so it is still one write per partition.
+        Map<String, List<WaybillRecord>> byDay = byDay(records);
+
+        // Under the map lock so maintenance cannot close a journal mid-append.
+        synchronized (open) {
+            byDay.forEach((day, batch) ->
+                    open.computeIfAbsent(day, d -> journalFactory.apply(dir.resolve(d + plainSuffix)))
+                            .appendAll(batch));
+        }
+    }
+
+    private static Map<String, List<WaybillRecord>> byDay(List<WaybillRecord> records) {
+        Map<String, List<WaybillRecord>> byDay = new LinkedHashMap<>();
+        for (WaybillRecord record : records) {
+            byDay.computeIfAbsent(record.createdDay(), d -> new ArrayList<>()).add(record);
+        }
+        return byDay;
+    }
+
+    @Override
+    public void force() {
+        synchronized (open) {
+            open.values().forEach(JournalStorageEngine::force);
+        }
+    }
+
+    /* ================= MAINTENANCE ================= */
+
+    /**
+     * Closes partitions that stopped receiving writes and gzips the ones
+     * older than {@code coldAfterDays}.
+     */
+    void maintain() throws IOException {
+        String today = LocalDate.now().toString();
+        String coldBefore = LocalDate.now().minusDays(coldAfterDays).toString();
+
+        synchronized (open) {
+            Iterator<Map.Entry<String, JournalStorageEngine>> it = open.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, JournalStorageEngine> entry = it.next();
+                if (entry.getKey().compareTo(today) < 0) {
+                    entry.getValue().close();
+                    it.remove();
+                }
+            }
+        }
+
+        for (String day : days()) {
+            if (day.compareTo(coldBefore) >= 0) {
+                break;
+            }
+            synchronized (open) {
+                if (!open.containsKey(day)) {
+                    compress(day);
+                }
+            }
+        }
+    }
+
+    private void compress(String day) throws IOException {
+        Path plain = dir.resolve(day + plainSuffix);
+        if (!Files.exists(plain)) {
+            return;
+        }
+        Path archive = dir.resolve(day + gzipSuffix);
+        Path tmp = dir.resolve(day + gzipSuffix + ".tmp");
+
+        // Concatenated gzip members read back as one stream, so an existing
+        // archive is copied as-is and the plain file is appended as a new member.
+        try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (Files.exists(archive)) {
+                Files.copy(archive, out);
+            }
+            // A torn tail would corrupt the frame that follows it in a later member.
+            long complete;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(plain), 64 * 1024)) {
+                complete = codec.forEachFrame(in, Long.MAX_VALUE, frame -> { });
+            }
+            GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+            try (InputStream in = Files.newInputStream(plain)) {
+                copy(in, gzip, complete);
+            }
+            gzip.finish();
+        }
+        Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(plain);
+    }
+
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = length;
+        while (remaining > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n < 0) {
+                break;
+            }
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (Exception e) {
+            log.atWarn()
+                    .addKeyValue("dir", dir)
+                    .setCause(e)
+                    .log("Waybill partition maintenance failed");
+        }
+    }
+
+    /* ================= STARTUP ================= */
+
+    /**
+     * Partitions in another format would be invisible to {@link #days()}, so
+     * switching {@code waybill.storage.format} on an existing directory would
+     * silently hide history. Refuse to start instead.
+     */
+    private void requireSingleFormat() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Matcher partition = PARTITION.matcher(file.getFileName().toString());
+                if (partition.matches() && !partition.group(1).equals(plainSuffix)) {
+                    throw new IllegalStateException("Waybill partitions in " + dir + " are stored as "
+                            + partition.group(1) + " but waybill.storage.format selects " + plainSuffix
+                            + ". Convert them first (WaybillStorageConverter convert-dir " + dir
+                            + " <outDir> <format>, then replace " + dir + " with <outDir>)"
+                            + " or set waybill.storage.format back.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the legacy history into partitions. They are written to a
+     * sibling staging directory one day at a time, so only one journal is
+     * open at once, and renamed into place only when complete: a crash part
+     * way leaves no partial history behind, and the import runs again on
+     * the next start.
+     */
+    private void migrate(Supplier<? extends WaybillStorageEngine> legacySource) throws IOException {
+        if (legacySource == null) {
+            return;
+        }
+        // Any file at all means partitions already exist, possibly in another
+        // format (see WaybillStorageConverter); never re-import over them.
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                if (files.iterator().hasNext()) {
+                    return;
+                }
+            }
+        }
+        Path staging = dir.resolveSibling(dir.getFileName() + ".migrating");
+        WaybillStorageEngine legacy = legacySource.get();
+        try {
+            deleteRecursively(staging);
+
+            List<WaybillRecord> records = legacy.loadAll();
+            if (records.isEmpty()) {
+                return;
+            }
+            Files.createDirectories(staging);
+            for (Map.Entry<String, List<WaybillRecord>> day : byDay(records).entrySet()) {
+                JournalStorageEngine journal = journalFactory.apply(staging.resolve(day.getKey() + plainSuffix));
+                try {
+                    journal.appendAll(day.getValue());
+                    journal.force();
+                } finally {
+                    journal.close();
+                }
+            }
+            Files.deleteIfExists(dir);
+            Files.move(staging, dir, StandardCopyOption.ATOMIC_MOVE);
+            log.atInfo()
+                    .addKeyValue("records", records.size())
+                    .addKeyValue("dir", dir)
+                    .log("Partitioned waybill history by day");
+        } finally {
+            legacy.close();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        synchronized (open) {
+            open.values().forEach(JournalStorageEngine::close);
+            open.clear();
+        }
+    }
+}
@@ -1,99 +1,235 @@
 package com.example.demo.repository;
 
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.dto.WaybillHistoryFilter;
+import com.example.demo.dto.WaybillPage;
 import com.example.demo.model.WaybillRecord;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Repository;
 
-import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Waybill history backed by a {@link WaybillStorageEngine}.
+ *
+ * The engine is only replayed once at startup to build the in-memory
+ * indexes; after that every query is served from memory and saves
+ * update the indexes alongside the on-disk append.
+ *
+ * The ordered view is partitioned by creation day: records are keyed by
+ * creation time, then AWB (see {@link #keyOf}), so a date-range query only
+ * visits the sub-map for the requested days, and the key doubles as the
+ * history cursor. It is a concurrent skip list, so pages and exports
+ * iterate it without copying or locking.
+ *
+ * Pruning therefore happens in memory: every partition, including gzipped
+ * cold ones, is still replayed at startup, because AWB and reference
+ * lookups (label downloads, bulk idempotency) must see all of history.
+ * Partitioning bounds the cost of writes and maintenance, not of startup.
+ */
 @Repository
 public class WaybillFileRepository {
 
-    private static final String FILE_PATH = "data/waybills.json";
-    private final ObjectMapper mapper = new ObjectMapper();
-
-    public synchronized void save(WaybillRecord record) {
-        try {
-            File file = new File(FILE_PATH);
+    private static final DateTimeFormatter KEY_TIME = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS");
 
-            // ✅ Ensure parent directory exists
-            if (!file.getParentFile().exists()) {
-                file.getParentFile().mkdirs();
-            }
+    private final WaybillStorageEngine storage;
+    private final WaybillMetrics metrics;
 
-            List<WaybillRecord> list;
+    /* ---------- Indexes ---------- */
+    private final ConcurrentSkipListMap<String, WaybillRecord> records = new ConcurrentSkipListMap<>();
+    private final Map<String, WaybillRecord> byAwbNo = new ConcurrentHashMap<>();
+    private final Map<String, List<WaybillRecord>> byCreditReferenceNo = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-            // ✅ Initialize file if missing OR empty
-            if (!file.exists() || file.length() == 0) {
-                list = new ArrayList<>();
-            } else {
-                list = mapper.readValue(
-                        file,
-                        new TypeReference<List<WaybillRecord>>() {}
-                );
-            }
+    /* ---------- Ordered keys (guarded by lock) ---------- */
+    private final Map<String, String> keyByAwbNo = new HashMap<>();
 
-            // ✅ Append new record
-            list.add(record);
+    public WaybillFileRepository(WaybillStorageEngine storage, WaybillMetrics metrics) {
+        this.storage = storage;
+        this.metrics = metrics;
+        storage.loadAll().forEach(this::index);
+    }
 
-            // ✅ Write full array back
-            mapper.writerWithDefaultPrettyPrinter()
-                  .writeValue(file, list);
+    public void save(WaybillRecord record) {
+        long start = System.nanoTime();
+        storage.append(record);
+        index(record);
+        metrics.record(WaybillMetrics.REPOSITORY_SAVE, start);
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to save waybill", e);
-        }
+    public void saveAll(List<WaybillRecord> records) {
+        long start = System.nanoTime();
+        storage.appendAll(records);
+        records.forEach(this::index);
+        metrics.record(WaybillMetrics.REPOSITORY_SAVE, start);
     }
 
     public WaybillRecord findByAwbNo(String awbNo) {
-    return findAll().stream()
-            .filter(w -> awbNo.equals(w.getAwbNo()))
-            .findFirst()
-            .orElse(null);
-}
+        long start = System.nanoTime();
+        WaybillRecord record = awbNo == null ? null : byAwbNo.get(awbNo);
+        metrics.record(WaybillMetrics.REPOSITORY_LOOKUP, start);
+        return record;
+    }
 
+    public List<WaybillRecord> findByCreditReferenceNo(String creditReferenceNo) {
+        if (creditReferenceNo == null) {
+            return List.of();
+        }
+        List<WaybillRecord> matches = byCreditReferenceNo.get(creditReferenceNo);
+        return matches == null ? List.of() : List.copyOf(matches);
+    }
 
-public synchronized void saveAll(List<WaybillRecord> records) {
-    try {
-        File file = new File(FILE_PATH);
+    /** Most recently saved record for the reference, or null. */
+    public WaybillRecord findLatestByCreditReferenceNo(String creditReferenceNo) {
+        if (creditReferenceNo == null) {
+            return null;
+        }
+        List<WaybillRecord> matches = byCreditReferenceNo.get(creditReferenceNo);
+        if (matches == null) {
+            return null;
+        }
+        // Read a snapshot: a concurrent re-save may remove entries from the live list.
+        Object[] snapshot = matches.toArray();
+        return snapshot.length == 0 ? null : (WaybillRecord) snapshot[snapshot.length - 1];
+    }
 
-        if (!file.getParentFile().exists()) {
-            file.getParentFile().mkdirs();
+    public List<WaybillRecord> findAll() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(records.values());
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        List<WaybillRecord> existing =
-                file.exists() && file.length() > 0
-                        ? mapper.readValue(file, new TypeReference<>() {})
-                        : new ArrayList<>();
+    /**
+     * Newest-first page of records matching {@code filter}, starting after
+     * {@code cursor} (null for the first page).
+     */
+    public WaybillPage<WaybillRecord> findPage(WaybillHistoryFilter filter, String cursor, int limit) {
+        return metrics.time(WaybillMetrics.REPOSITORY_LOOKUP, () -> page(filter, cursor, limit));
+    }
 
-        existing.addAll(records);
+    private WaybillPage<WaybillRecord> page(WaybillHistoryFilter filter, String cursor, int limit) {
+        ConcurrentNavigableMap<String, WaybillRecord> newestFirst = candidates(filter).descendingMap();
+        if (cursor != null && !cursor.isBlank()) {
+            newestFirst = newestFirst.tailMap(cursor, false);
+        }
+
+        List<WaybillRecord> items = new ArrayList<>(limit);
+        String last = null;
+        for (Map.Entry<String, WaybillRecord> entry : newestFirst.entrySet()) {
+            if (!filter.matches(entry.getValue())) {
+                continue;
+            }
+            if (items.size() == limit) {
+                return new WaybillPage<>(items, last);
+            }
+            items.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new WaybillPage<>(items, null);
+    }
 
-        mapper.writerWithDefaultPrettyPrinter()
-              .writeValue(file, existing);
+    /** Oldest-first lazy view of matching records; nothing is copied up front. */
+    public Stream<WaybillRecord> stream(WaybillHistoryFilter filter) {
+        return candidates(filter).values().stream().filter(filter::matches);
+    }
 
-    } catch (Exception e) {
-        throw new RuntimeException("Failed to save waybills", e);
+    /**
+     * Records that can match {@code filter}, in key order. A reference only
+     * has a handful of records, so they come from the reference index rather
+     * than a scan of the date range.
+     */
+    private ConcurrentNavigableMap<String, WaybillRecord> candidates(WaybillHistoryFilter filter) {
+        if (filter.getCreditReferenceNo() == null) {
+            return inRange(filter);
+        }
+        ConcurrentSkipListMap<String, WaybillRecord> matches = new ConcurrentSkipListMap<>();
+        for (WaybillRecord record : findByCreditReferenceNo(filter.getCreditReferenceNo())) {
+            matches.put(keyOf(record), record);
+        }
+        return matches;
     }
-}
 
+    /** Prunes to the days covered by the filter's date range. */
+    private ConcurrentNavigableMap<String, WaybillRecord> inRange(WaybillHistoryFilter filter) {
+        String from = filter.getFrom() == null ? null : filter.getFrom().toString();
+        String until = filter.getTo() == null ? null : filter.getTo().plusDays(1).toString();
 
+        if (from != null && until != null) {
+            return records.subMap(from, true, until, false);
+        }
+        if (from != null) {
+            return records.tailMap(from, true);
+        }
+        if (until != null) {
+            return records.headMap(until, false);
+        }
+        return records;
+    }
 
-    public List<WaybillRecord> findAll() {
+    private void index(WaybillRecord record) {
+        lock.writeLock().lock();
         try {
-            File file = new File(FILE_PATH);
-            if (!file.exists() || file.length() == 0) {
-                return new ArrayList<>();
+            String key = keyOf(record);
+            WaybillRecord previous = null;
+            if (record.getAwbNo() != null) {
+                previous = byAwbNo.put(record.getAwbNo(), record);
+                String previousKey = keyByAwbNo.put(record.getAwbNo(), key);
+                if (previousKey != null) {
+                    records.remove(previousKey);
+                }
+            }
+
+            if (previous != null) {
+                // Same AWB saved again: the newer copy supersedes the old one.
+                List<WaybillRecord> refs = byCreditReferenceNo.get(previous.getCreditReferenceNo());
+                if (refs != null) {
+                    refs.remove(previous);
+                }
             }
 
-            return mapper.readValue(
-                    file,
-                    new TypeReference<List<WaybillRecord>>() {}
-            );
-        } catch (Exception e) {
-            return new ArrayList<>();
+            records.put(key, record);
+
+            if (record.getCreditReferenceNo() != null) {
+                byCreditReferenceNo
+                        .computeIfAbsent(record.getCreditReferenceNo(), k -> new CopyOnWriteArrayList<>())
+                        .add(record);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ordered-view key and history cursor: the creation time at fixed width,
+     * so keys sort chronologically, then the AWB for records created in the
+     * same instant. Both are persisted, so a cursor points at the same place
+     * in history across restarts, compactions and re-saves.
+     */
+    static String keyOf(WaybillRecord record) {
+        String id = record.getAwbNo() != null ? record.getAwbNo() : String.valueOf(record.getCreditReferenceNo());
+        return sortableCreatedAt(record) + "_" + id;
+    }
+
+    private static String sortableCreatedAt(WaybillRecord record) {
+        try {
+            return LocalDateTime.parse(record.getCreatedAt()).format(KEY_TIME);
+        } catch (RuntimeException e) {
+            // Missing or unreadable: start of its day, or before all history without one.
+            return record.createdDay() + "T00:00:00.000000000";
         }
     }
 }
@@ -0,0 +1,175 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * On-disk encoding of journal records: how one record is serialized and
+ * how records are framed in an append-only file.
+ *
+ * {@code ndjson} is one JSON document per line. {@code smile} is Jackson's
+ * binary JSON, which can contain newline bytes, so each record is prefixed
+ * with its length instead. A frame cut short by a crash is never returned
+ * by {@link #forEachFrame}.
+ */
+public interface WaybillRecordCodec {
+
+    /** Names accepted by {@link #of}. */
+    List<String> FORMATS = List.of("ndjson", "smile");
+
+    /** File suffix, including the dot. */
+    String extension();
+
+    byte[] encode(WaybillRecord record) throws IOException;
+
+    WaybillRecord decode(byte[] payload) throws IOException;
+
+    void writeFrame(ByteArrayOutputStream out, byte[] payload) throws IOException;
+
+    /**
+     * Passes the payload of every complete frame in the first {@code limit}
+     * bytes of {@code in} to {@code consumer}.
+     *
+     * @return the offset just past the last complete frame
+     */
+    long forEachFrame(InputStream in, long limit, Consumer<byte[]> consumer) throws IOException;
+
+    static WaybillRecordCodec of(String format) {
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson":
+            case "json":
+                return new Ndjson(new ObjectMapper());
+            case "smile":
+                return new Smile(new ObjectMapper(new SmileFactory()));
+            default:
+                throw new IllegalArgumentException("Unknown waybill storage format: " + format);
+        }
+    }
+
+    /* ================= NDJSON ================= */
+
+    final class Ndjson implements WaybillRecordCodec {
+
+        private static final byte NEWLINE = '\n';
+
+        private final ObjectMapper mapper;
+
+        public Ndjson(ObjectMapper mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public String extension() {
+            return ".ndjson";
+        }
+
+        @Override
+        public byte[] encode(WaybillRecord record) throws IOException {
+            return mapper.writeValueAsBytes(record);
+        }
+
+        @Override
+        public WaybillRecord decode(byte[] payload) throws IOException {
+            return mapper.readValue(payload, WaybillRecord.class);
+        }
+
+        @Override
+        public void writeFrame(ByteArrayOutputStream out, byte[] payload) {
+            out.write(payload, 0, payload.length);
+            out.write(NEWLINE);
+        }
+
+        @Override
+        public long forEachFrame(InputStream in, long limit, Consumer<byte[]> consumer) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+            long read = 0;
+            long complete = 0;
+            while (read < limit) {
+                int b = in.read();
+                if (b < 0) {
+                    break;
+                }
+                read++;
+                if (b == NEWLINE) {
+                    if (line.size() > 0) {
+                        consumer.accept(line.toByteArray());
+                    }
+                    line.reset();
+                    complete = read;
+                } else {
+                    line.write(b);
+                }
+            }
+            return complete;
+        }
+    }
+
+    /* ================= SMILE ================= */
+
+    final class Smile implements WaybillRecordCodec {
+
+        private static final int HEADER = 4;
+
+        private final ObjectMapper mapper;
+
+        public Smile(ObjectMapper mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public String extension() {
+            return ".smile";
+        }
+
+        @Override
+        public byte[] encode(WaybillRecord record) throws IOException {
+            return mapper.writeValueAsBytes(record);
+        }
+
+        @Override
+        public WaybillRecord decode(byte[] payload) throws IOException {
+            return mapper.readValue(payload, WaybillRecord.class);
+        }
+
+        @Override
+        public void writeFrame(ByteArrayOutputStream out, byte[] payload) {
+            int length = payload.length;
+            out.write(length >>> 24);
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+            out.write(payload, 0, length);
+        }
+
+        @Override
+        public long forEachFrame(InputStream in, long limit, Consumer<byte[]> consumer) throws IOException {
+            byte[] header = new byte[HEADER];
+            long complete = 0;
+            while (complete + HEADER <= limit) {
+                if (in.readNBytes(header, 0, HEADER) < HEADER) {
+                    break;
+                }
+                int length = ((header[0] & 0xFF) << 24) | ((header[1] & 0xFF) << 16)
+                        | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+                if (length < 0 || complete + HEADER + length > limit) {
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                if (payload.length < length) {
+                    break;
+                }
+                consumer.accept(payload);
+                complete += HEADER + length;
+            }
+            return complete;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Offline conversion between waybill storage formats, plus a size
+ * comparison. Run with the application stopped:
+ *
+ * <pre>
+ * convert     &lt;in&gt; &lt;out&gt;            e.g. data/waybills.ndjson data/waybills.smile
+ * convert-dir &lt;inDir&gt; &lt;outDir&gt; &lt;format&gt; day partitions, e.g. data/waybills data/waybills-smile smile
+ * sizes       &lt;in&gt;                  bytes and gzipped bytes of the records in &lt;in&gt; as json / ndjson / smile
+ * </pre>
+ *
+ * File formats follow the suffix: {@code .json} (legacy pretty-printed
+ * array), {@code .ndjson} or {@code .smile}, each optionally {@code .gz}.
+ * From the packaged jar:
+ * {@code java -cp shipping.jar -Dloader.main=com.example.demo.repository.WaybillStorageConverter
+ * org.springframework.boot.loader.launch.PropertiesLauncher sizes data/waybills.json}
+ * Encode / decode speed is measured by the JMH {@code WaybillCodecBenchmark}.
+ */
+public final class WaybillStorageConverter {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private WaybillStorageConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && "convert".equals(args[0])) {
+            List<WaybillRecord> records = read(Path.of(args[1]));
+            write(Path.of(args[2]), records);
+            System.out.println("✅ Converted " + records.size() + " waybills to " + args[2]);
+        } else if (args.length >= 4 && "convert-dir".equals(args[0])) {
+            convertDir(Path.of(args[1]), Path.of(args[2]), args[3]);
+        } else if (args.length >= 2 && "sizes".equals(args[0])) {
+            sizes(read(Path.of(args[1])));
+        } else {
+            System.err.println("usage: convert <in> <out> | convert-dir <inDir> <outDir> <format> | sizes <in>");
+            System.exit(2);
+        }
+    }
+
+    /* ================= CONVERT ================= */
+
+    static List<WaybillRecord> read(Path file) throws IOException {
+        String name = baseName(file);
+        try (InputStream in = open(file)) {
+            if (name.endsWith(".json")) {
+                return JSON.readValue(in, new TypeReference<List<WaybillRecord>>() {});
+            }
+            WaybillRecordCodec codec = codecFor(name);
+            List<WaybillRecord> records = new ArrayList<>();
+            IOException[] failure = {null};
+            codec.forEachFrame(in, Long.MAX_VALUE, frame -> {
+                try {
+                    records.add(codec.decode(frame));
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            return records;
+        }
+    }
+
+    static void write(Path file, List<WaybillRecord> records) throws IOException {
+        String name = baseName(file);
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        try (OutputStream out = create(file)) {
+            if (name.endsWith(".json")) {
+                JSON.writerWithDefaultPrettyPrinter().writeValue(out, records);
+                return;
+            }
+            out.write(encode(codecFor(name), records));
+        }
+    }
+
+    private static void convertDir(Path inDir, Path outDir, String format) throws IOException {
+        WaybillRecordCodec target = WaybillRecordCodec.of(format);
+        Files.createDirectories(outDir);
+
+        int files = 0;
+        int records = 0;
+        try (DirectoryStream<Path> partitions = Files.newDirectoryStream(inDir)) {
+            for (Path partition : partitions) {
+                String name = partition.getFileName().toString();
+                String base = baseName(partition);
+                int dot = base.indexOf('.');
+                if (dot < 0 || !(base.endsWith(".ndjson") || base.endsWith(".smile"))) {
+                    continue;
+                }
+                String suffix = target.extension() + (name.endsWith(".gz") ? ".gz" : "");
+                List<WaybillRecord> day = read(partition);
+                write(outDir.resolve(base.substring(0, dot) + suffix), day);
+                files++;
+                records += day.size();
+            }
+        }
+        System.out.println("✅ Converted " + records + " waybills in " + files + " partitions to " + outDir);
+    }
+
+    /* ================= SIZES ================= */
+
+    private static void sizes(List<WaybillRecord> records) throws IOException {
+        System.out.printf("%d records%n", records.size());
+        System.out.printf("%-8s %12s %12s%n", "format", "bytes", "gzip bytes");
+
+        report("json", JSON.writerWithDefaultPrettyPrinter().writeValueAsBytes(records));
+        for (String format : WaybillRecordCodec.FORMATS) {
+            report(format, encode(WaybillRecordCodec.of(format), records));
+        }
+    }
+
+    private static void report(String format, byte[] encoded) throws IOException {
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gz)) {
+            out.write(encoded);
+        }
+        System.out.printf("%-8s %12d %12d%n", format, encoded.length, gz.size());
+    }
+
+    /* ================= HELPERS ================= */
+
+    static byte[] encode(WaybillRecordCodec codec, List<WaybillRecord> records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (WaybillRecord record : records) {
+            codec.writeFrame(out, codec.encode(record));
+        }
+        return out.toByteArray();
+    }
+
+    private static WaybillRecordCodec codecFor(String name) {
+        if (name.endsWith(".ndjson")) {
+            return WaybillRecordCodec.of("ndjson");
+        }
+        if (name.endsWith(".smile")) {
+            return WaybillRecordCodec.of("smile");
+        }
+        throw new IllegalArgumentException("Unknown waybill file type: " + name);
+    }
+
+    /** File name without a trailing {@code .gz}. */
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    private static OutputStream create(Path file) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPOutputStream(out) : out;
+    }
+}
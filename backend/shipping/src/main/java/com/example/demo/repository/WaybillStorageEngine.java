@@ -0,0 +1,29 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Pluggable persistence backend behind {@link WaybillFileRepository}.
+ * Implementations decide how records are laid out on disk; the repository
+ * only relies on append and full replay.
+ */
+public interface WaybillStorageEngine extends Closeable {
+
+    /** Replays every persisted record in insertion order. */
+    List<WaybillRecord> loadAll();
+
+    void append(WaybillRecord record);
+
+    void appendAll(List<WaybillRecord> records);
+
+    /** Forces everything appended so far to stable storage. */
+    default void force() {
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind decorator: appends are queued and a single flusher thread
+ * commits them to the wrapped engine in groups of up to {@code batchSize}
+ * records, so a burst of saves (a bulk upload in particular) becomes a few
+ * large appends instead of one per record.
+ *
+ * With {@code durable=false} callers return as soon as the record is
+ * queued; a failed group is retried until it commits. With
+ * {@code durable=true} callers block until their group has been appended
+ * and fsynced (group commit: concurrent savers share one fsync), and see
+ * the failure if it could not be written. The queue is bounded, so a stalled
+ * disk pushes back on writers instead of growing the heap; a writer that
+ * cannot queue within {@code enqueueTimeoutMs} gets an exception rather than
+ * hanging its request. {@link #close()} drains the queue before closing the
+ * wrapped engine.
+ */
+public class WriteBehindStorageEngine implements WaybillStorageEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindStorageEngine.class);
+
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final WaybillStorageEngine delegate;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final boolean durable;
+    private final long enqueueTimeoutMs;
+
+    private final BlockingQueue<Pending> queue;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    public WriteBehindStorageEngine(
+            WaybillStorageEngine delegate,
+            int batchSize,
+            long flushIntervalMs,
+            int queueCapacity,
+            long enqueueTimeoutMs,
+            boolean durable
+    ) {
+        this.delegate = delegate;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.durable = durable;
+        this.enqueueTimeoutMs = Math.max(0, enqueueTimeoutMs);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        this.flusher = new Thread(this::flushLoop, "waybill-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public List<WaybillRecord> loadAll() {
+        return delegate.loadAll();
+    }
+
+    @Override
+    public void append(WaybillRecord record) {
+        appendAll(List.of(record));
+    }
+
+    @Override
+    public void appendAll(List<WaybillRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (closed) {
+            delegate.appendAll(records);
+            return;
+        }
+        Pending pending = enqueue(records);
+        if (durable) {
+            await(pending);
+        }
+    }
+
+    /** Waits until everything queued so far is appended, then forces it to disk. */
+    @Override
+    public void force() {
+        if (!closed) {
+            await(enqueue(List.of()));
+        }
+        delegate.force();
+    }
+
+    /** Records waiting to be written. */
+    public int backlog() {
+        int records = 0;
+        for (Pending pending : queue) {
+            records += pending.records.size();
+        }
+        return records;
+    }
+
+    /* ================= FLUSHER ================= */
+
+    private void flushLoop() {
+        List<Pending> group = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                int count = first.records.size();
+
+                // Take whatever queued up meanwhile; without durability also
+                // linger briefly so trickling saves still share one write.
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (count < batchSize) {
+                    Pending next = queue.poll();
+                    if (next == null && !durable && !closed) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining > 0) {
+                            next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        }
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    count += next.records.size();
+                }
+
+                commit(group);
+            } catch (InterruptedException e) {
+                // Nothing interrupts this thread on purpose (an interrupt would close
+                // the journal's FileChannel mid-write). The records already taken
+                // off the queue are still owed a write; commit them, then keep draining.
+                if (!group.isEmpty()) {
+                    commit(group);
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /** Completes the future of every entry in {@code group}, whatever happens. */
+    private void commit(List<Pending> group) {
+        List<WaybillRecord> records = new ArrayList<>();
+        for (Pending pending : group) {
+            records.addAll(pending.records);
+        }
+
+        while (true) {
+            try {
+                if (!records.isEmpty()) {
+                    delegate.appendAll(records);
+                }
+                if (durable) {
+                    delegate.force();
+                }
+                group.forEach(p -> p.done.complete(null));
+                return;
+            } catch (RuntimeException e) {
+                if (durable) {
+                    group.forEach(p -> p.done.completeExceptionally(e));
+                    return;
+                }
+                if (closed) {
+                    log.atError()
+                            .addKeyValue("records", records.size())
+                            .setCause(e)
+                            .log("Write-behind commit failed on shutdown; dropping unsaved waybills");
+                    group.forEach(p -> p.done.completeExceptionally(e));
+                    return;
+                }
+                log.atWarn()
+                        .addKeyValue("records", records.size())
+                        .log("Write-behind commit failed, retrying: {}", e.getMessage());
+                pause();
+            }
+        }
+    }
+
+    /* ================= HELPERS ================= */
+
+    private Pending enqueue(List<WaybillRecord> records) {
+        Pending pending = new Pending(records);
+        boolean queued;
+        try {
+            queued = queue.offer(pending, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing waybill", e);
+        }
+        if (!queued) {
+            throw new RuntimeException("Waybill write-behind queue still full after "
+                    + enqueueTimeoutMs + "ms; storage is not keeping up");
+        }
+        return pending;
+    }
+
+    /** Sleeps before a retry; an interrupt only cuts the wait short. */
+    private static void pause() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            // See flushLoop: the pending group must still be committed.
+        }
+    }
+
+    private void await(Pending pending) {
+        try {
+            pending.done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException
+                    ? (RuntimeException) cause
+                    : new RuntimeException("Failed to save waybill", cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.atError()
+                    .addKeyValue("records", backlog())
+                    .log("Write-behind flush did not finish; waybills not written");
+        } else {
+            // Saves that raced with close() and were queued after the flusher exited.
+            Pending late;
+            while ((late = queue.poll()) != null) {
+                delegate.appendAll(late.records);
+                late.done.complete(null);
+            }
+        }
+        delegate.close();
+    }
+
+    private static final class Pending {
+        private final List<WaybillRecord> records;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Pending(List<WaybillRecord> records) {
+            this.records = records;
+        }
+    }
+}
@@ -1,5 +1,11 @@
 package com.example.demo.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -7,10 +13,28 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Base64;
 import java.util.Map;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the Bluedart JWT.
+ *
+ * Reads are lock-free: the current token is published through a volatile
+ * field. Refreshes are single-flight (one login call no matter how many
+ * threads ask) and are scheduled ahead of the token's real {@code exp}
+ * claim, so request threads normally never wait for a login.
+ */
 @Service
-public class BluedartAuthService {
+public class BluedartAuthService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BluedartAuthService.class);
+
+    /** Used when the token carries no readable exp claim. */
+    private static final long FALLBACK_TTL_MILLIS = TimeUnit.HOURS.toMillis(23);
 
     @Value("${bluedart.base-url}")
     private String baseUrl;
@@ -21,16 +45,104 @@ public class BluedartAuthService {
     @Value("${bluedart.client-secret}")
     private String clientSecret;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${bluedart.token.refresh-ahead-seconds:300}")
+    private long refreshAheadSeconds;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Object refreshLock = new Object();
+    private final ScheduledExecutorService scheduler;
+    private volatile Token current;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public BluedartAuthService(@Qualifier("bluedartRestTemplate") RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bluedart-token-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public String getJwtToken() {
+        Token token = current;
+        if (token != null && token.isValid()) {
+            return token.value;
+        }
+        return refresh(null);
+    }
+
+    /**
+     * Called when the gateway rejected {@code rejectedToken} with 401.
+     * Only the first caller for a given token logs in again; the rest
+     * pick up the token it fetched.
+     */
+    public String refreshAfterUnauthorized(String rejectedToken) {
+        return refresh(rejectedToken);
+    }
+
+    private String refresh(String rejectedToken) {
+        synchronized (refreshLock) {
+            Token token = current;
+            boolean stillUsable = token != null && token.isValid()
+                    && (rejectedToken == null || !rejectedToken.equals(token.value));
+            if (stillUsable) {
+                return token.value;
+            }
+
+            Token fresh = login();
+            current = fresh;
+            scheduleProactiveRefresh(fresh);
+            return fresh.value;
+        }
+    }
 
-    private String cachedJwtToken;
-    private long tokenExpiryTime;
+    /** Call with {@code refreshLock} held. */
+    private void scheduleProactiveRefresh(Token token) {
+        long lifetime = token.expiresAt - System.currentTimeMillis();
+        // Short-lived tokens refresh at half-life instead of looping on a negative delay;
+        // one already expired on arrival (clock skew) still gets the next refresh.
+        long delay = lifetime > 0
+                ? Math.max(lifetime - TimeUnit.SECONDS.toMillis(refreshAheadSeconds), lifetime / 2)
+                : FALLBACK_TTL_MILLIS;
+        schedule(delay, TimeUnit.MILLISECONDS);
+    }
 
-    public synchronized String getJwtToken() {
+    /** Call with {@code refreshLock} held. */
+    private void schedule(long delay, TimeUnit unit) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(this::backgroundRefresh, delay, unit);
+    }
 
-        if(cachedJwtToken != null && System.currentTimeMillis() < tokenExpiryTime) {
-            return cachedJwtToken;
+    /**
+     * Logs in without holding {@code refreshLock}, so a 401 retry keeps being
+     * answered from the still-valid token meanwhile; the lock is only taken
+     * to publish the result.
+     */
+    private void backgroundRefresh() {
+        Token fresh;
+        try {
+            fresh = login();
+        } catch (Exception e) {
+            // The old token keeps being served until it expires; try again shortly.
+            log.atWarn()
+                    .addKeyValue("retryInSeconds", 30)
+                    .log("Background JWT refresh failed: {}", e.getMessage());
+            synchronized (refreshLock) {
+                schedule(30, TimeUnit.SECONDS);
+            }
+            return;
+        }
+        synchronized (refreshLock) {
+            current = fresh;
+            scheduleProactiveRefresh(fresh);
         }
+    }
+
+    private Token login() {
 
         String url = baseUrl + "/in/transportation/token/v1/login";
 
@@ -53,12 +165,44 @@ public class BluedartAuthService {
                 Map.class
         );
 
-        cachedJwtToken = response.getBody().get("JWTToken").toString();
+        String jwt = response.getBody().get("JWTToken").toString();
 
-        // Assuming token is valid for 23 hour
+        return new Token(jwt, expiryOf(jwt));
+    }
 
-        tokenExpiryTime = System.currentTimeMillis() + (23 * 60 * 60 * 1000);
+    /** Reads the {@code exp} claim (seconds since epoch) from the JWT payload. */
+    private long expiryOf(String jwt) {
+        try {
+            String[] parts = jwt.split("\\.");
+            JsonNode claims = mapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            JsonNode exp = claims.get("exp");
+            if (exp != null && exp.canConvertToLong()) {
+                return TimeUnit.SECONDS.toMillis(exp.asLong());
+            }
+        } catch (Exception e) {
+            log.atWarn()
+                    .addKeyValue("assumedValidityHours", 23)
+                    .log("Could not read JWT exp claim: {}", e.getMessage());
+        }
+        return System.currentTimeMillis() + FALLBACK_TTL_MILLIS;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class Token {
+        private final String value;
+        private final long expiresAt;
 
-        return cachedJwtToken;
+        private Token(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isValid() {
+            return System.currentTimeMillis() < expiresAt;
+        }
     }
 }
@@ -1,67 +1,144 @@
 package com.example.demo.service;
 
+import com.example.demo.config.WaybillMetrics;
 import com.example.demo.dto.BulkWaybillResult;
+import com.example.demo.dto.GenerateWaybillRequest;
+import com.example.demo.exception.GatewayLimiterRejectedException;
+import com.example.demo.exception.GatewayUnavailableException;
 import com.example.demo.model.WaybillRecord;
 import com.example.demo.repository.WaybillFileRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
-import com.example.demo.dto.FailureRow;
 
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 @Service
 public class BluedartWaybillService {
 
+    private static final Logger log = LoggerFactory.getLogger(BluedartWaybillService.class);
+
     private final BluedartAuthService authService;
     private final WaybillFileRepository repository;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final ExecutorService bulkExecutor;
+    private final WaybillPrerenderQueue prerenderQueue;
+    private final BulkIdempotencyGuard idempotencyGuard;
+    private final GatewayRateLimiter rateLimiter;
+    private final GatewayResilience resilience;
+    private final WaybillMetrics metrics;
+    private final WaybillPayloadLogger payloadLogger;
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectWriter requestWriter = mapper.writerFor(GenerateWaybillRequest.class);
+
+    @Value("${bluedart.bulk.parallel:true}")
+    private boolean parallelBulk;
+
+    @Value("${bluedart.bulk.max-in-flight:8}")
+    private int maxInFlight;
 
     public BluedartWaybillService(
             BluedartAuthService authService,
-            WaybillFileRepository repository
+            WaybillFileRepository repository,
+            @Qualifier("bluedartRestTemplate") RestTemplate restTemplate,
+            @Qualifier("bulkWaybillExecutor") ExecutorService bulkWaybillExecutor,
+            WaybillPrerenderQueue prerenderQueue,
+            BulkIdempotencyGuard idempotencyGuard,
+            GatewayRateLimiter rateLimiter,
+            GatewayResilience resilience,
+            WaybillMetrics metrics,
+            WaybillPayloadLogger payloadLogger
     ) {
         this.authService = authService;
         this.repository = repository;
+        this.restTemplate = restTemplate;
+        this.bulkExecutor = bulkWaybillExecutor;
+        this.prerenderQueue = prerenderQueue;
+        this.idempotencyGuard = idempotencyGuard;
+        this.rateLimiter = rateLimiter;
+        this.resilience = resilience;
+        this.metrics = metrics;
+        this.payloadLogger = payloadLogger;
     }
 
-    @SuppressWarnings("unchecked")
 public Map<String, Object> generateWaybill(Map<String, Object> requestBody) {
+    try {
+        Map<String, Object> response = generateWaybill(requestBody, extractCreditRef(requestBody), () -> requestBody);
+        metrics.success("single");
+        return response;
+    } catch (RuntimeException e) {
+        metrics.failure("single", e);
+        throw e;
+    }
+}
 
-    String jwtToken = authService.getJwtToken();
-
-    HttpHeaders headers = new HttpHeaders();
-    headers.set("JWTToken", jwtToken);
-    headers.setContentType(MediaType.APPLICATION_JSON);
+/**
+ * Bulk path: the typed request is serialized once through a cached
+ * {@link ObjectWriter}; the map form kept on {@link WaybillRecord} is only
+ * materialized after Bluedart accepted the waybill.
+ */
+public Map<String, Object> generateWaybill(GenerateWaybillRequest request) {
+    byte[] body;
+    try {
+        body = requestWriter.writeValueAsBytes(request);
+    } catch (JsonProcessingException e) {
+        throw new RuntimeException("Failed to serialize waybill request", e);
+    }
+    return generateWaybill(
+            body,
+            creditRefOf(request),
+            () -> mapper.convertValue(request, MAP_TYPE)
+    );
+}
 
-    HttpEntity<Map<String, Object>> entity =
-            new HttpEntity<>(requestBody, headers);
+    @SuppressWarnings("unchecked")
+private Map<String, Object> generateWaybill(
+        Object requestBody,
+        String creditRef,
+        Supplier<Map<String, Object>> recordRequest
+) {
 
     Map<String, Object> responseBody;
 
     try {
-        System.out.println("➡️ Sending request to Bluedart:");
-        System.out.println(requestBody);
+        payloadLogger.sample("generateWaybill", requestBody);
 
-        ResponseEntity<Map> response = restTemplate.postForEntity(
-                "https://apigateway-sandbox.bluedart.com/in/transportation/waybill/v1/GenerateWayBill",
-                entity,
-                Map.class
-        );
+        String jwtToken = metrics.time(WaybillMetrics.TOKEN_FETCH, authService::getJwtToken);
+        ResponseEntity<Map> response;
+        try {
+            response = postGenerateWaybill(requestBody, jwtToken);
+        } catch (HttpClientErrorException.Unauthorized e) {
+            // Token revoked or expired early: refresh once (shared across threads) and retry.
+            response = postGenerateWaybill(requestBody, authService.refreshAfterUnauthorized(jwtToken));
+        }
 
         responseBody = response.getBody();
 
-        if (responseBody == null) {
-            throw new RuntimeException("Empty response from Bluedart");
-        }
-
+    } catch (GatewayUnavailableException | GatewayLimiterRejectedException e) {
+        // Circuit open or no limiter slot: nothing was sent, so there is no payload to report.
+        throw e;
     } catch (Exception e) {
-        System.err.println("❌ Bluedart API FAILED");
-        System.err.println("➡️ Payload that caused failure:");
-        System.err.println(requestBody);
-        e.printStackTrace();
+        log.atWarn()
+                .addKeyValue("creditRef", creditRef)
+                .addKeyValue("errorClass", GatewayResilience.classify(e).name())
+                .log("Bluedart GenerateWayBill failed: {}", e.getMessage());
+        payloadLogger.failure("generateWaybill", requestBody, e);
         throw new RuntimeException("Bluedart API error", e);
     }
 
@@ -77,28 +154,68 @@ public Map<String, Object> generateWaybill(Map<String, Object> requestBody) {
     }
 
     String awbNo = result.get("AWBNo").toString();
+    log.atDebug()
+            .addKeyValue("awbNo", awbNo)
+            .addKeyValue("creditRef", creditRef)
+            .log("Waybill generated");
 
     /* ---------- PERSIST WAYBILL ---------- */
 
     try {
-        repository.save(
-                new WaybillRecord(
-                        awbNo,
-                        extractCreditRef(requestBody),
-                        requestBody,
-                        responseBody
-                )
+        WaybillRecord record = new WaybillRecord(
+                awbNo,
+                creditRef,
+                recordRequest.get(),
+                responseBody
         );
+        repository.save(record);
+        prerenderQueue.enqueue(record);
     } catch (Exception e) {
         // Persistence failure should NOT hide Bluedart success
-        System.err.println("⚠️ Failed to save WaybillRecord for AWB: " + awbNo);
-        e.printStackTrace();
+        log.atError()
+                .addKeyValue("awbNo", awbNo)
+                .addKeyValue("creditRef", creditRef)
+                .setCause(e)
+                .log("Failed to save WaybillRecord");
     }
 
     return responseBody;
 }
 
 
+    /**
+     * Every GenerateWayBill call, single or bulk, goes through the circuit
+     * breaker and retry policy, and each attempt through the shared limiter.
+     */
+    @SuppressWarnings("rawtypes")
+    private ResponseEntity<Map> postGenerateWaybill(Object requestBody, String jwtToken) {
+        return resilience.execute(() -> rateLimiter.execute(() ->
+                metrics.time(WaybillMetrics.GATEWAY, () -> sendGenerateWaybill(requestBody, jwtToken))));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private ResponseEntity<Map> sendGenerateWaybill(Object requestBody, String jwtToken) {
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("JWTToken", jwtToken);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        HttpEntity<Object> entity =
+                new HttpEntity<>(requestBody, headers);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+                "https://apigateway-sandbox.bluedart.com/in/transportation/waybill/v1/GenerateWayBill",
+                entity,
+                Map.class
+        );
+        if (response.getBody() == null) {
+            // Checked inside the resilient call: the request went out and may
+            // have created a waybill, so this is an uncertain failure, not a success.
+            throw new ResourceAccessException("Empty response from Bluedart");
+        }
+        return response;
+    }
+
     private String extractCreditRef(Map<String, Object> requestBody) {
         try {
             Map<String, Object> req =
@@ -111,45 +228,71 @@ public Map<String, Object> generateWaybill(Map<String, Object> requestBody) {
         }
     }
 
-    public BulkWaybillResult generateBulkWaybills(List<Map<String,Object>> requests) {
+    private static String creditRefOf(GenerateWaybillRequest request) {
+        String ref = request.creditReferenceNo();
+        return ref == null ? "NA" : ref;
+    }
+
+    public BulkWaybillResult generateBulkWaybills(List<GenerateWaybillRequest> requests) {
+        return generateBulkWaybills(requests, BulkRowListener.NONE);
+    }
 
-        BulkWaybillResult result=new BulkWaybillResult();
-        result.setTotal(requests.size());
+    public BulkWaybillResult generateBulkWaybills(List<GenerateWaybillRequest> requests, BulkRowListener listener) {
 
+        BulkWaybillRun run = startBulkRun(listener);
 
-        //List<WaybillRecord> successRecords=new ArrayList<>();
+        for(GenerateWaybillRequest request:requests){
+            run.submit(request);
+        }
+        return run.finish();
+    }
 
-        int rowNo=1;
+    /**
+     * Starts a bulk run that accepts rows incrementally. In parallel mode
+     * rows execute on the shared bulk executor with at most
+     * {@code bluedart.bulk.max-in-flight} outstanding gateway calls;
+     * otherwise they run one by one on the submitting thread.
+     */
+    public BulkWaybillRun startBulkRun(BulkRowListener listener) {
+        return startBulkRun(listener, null);
+    }
 
-        for(Map<String,Object> request:requests){
+    /** As {@link #startBulkRun(BulkRowListener)}, streaming finished rows to {@code sink} in row order. */
+    public BulkWaybillRun startBulkRun(BulkRowListener listener, BulkResultSink sink) {
+        Executor executor = parallelBulk ? bulkExecutor : Runnable::run;
+        return new BulkWaybillRun(
+                executor,
+                parallelBulk ? maxInFlight : 1,
+                this::generateBulkRow,
+                BluedartWaybillService::creditRefOf,
+                listener,
+                sink
+        );
+    }
 
-            try {
-                Map<String,Object> response = generateWaybill(request);
+    /** Rows whose CreditReferenceNo already has a waybill are not sent again. */
+    private WaybillRecord generateBulkRow(GenerateWaybillRequest request) {
+        try {
+            WaybillRecord record = idempotencyGuard.resolve(creditRefOf(request), () -> generateBulkWaybill(request));
+            metrics.success("bulk");
+            return record;
+        } catch (RuntimeException e) {
+            metrics.failure("bulk", e);
+            throw e;
+        }
+    }
 
-                Map<String,Object> gwb=
-                        (Map<String,Object>) response.get("GenerateWayBillResult");
+    @SuppressWarnings("unchecked")
+    private WaybillRecord generateBulkWaybill(GenerateWaybillRequest request) {
 
-                String awbNo = gwb.get("AWBNo").toString();
+        Map<String,Object> response = generateWaybill(request);
 
-                WaybillRecord record = repository.findByAwbNo(awbNo);
+        Map<String,Object> gwb=
+                (Map<String,Object>) response.get("GenerateWayBillResult");
 
-                if(record!=null) {
-                    //successRecords.add(record);
-                    result.getSuccessRecords().add(record);
-                }
+        String awbNo = gwb.get("AWBNo").toString();
 
-            } catch (Exception e) {
-               String ref=extractCreditRef(request);
-               result.getFailures().add(
-                   new FailureRow(rowNo, ref, e.getMessage())
-               );
-            }
-            rowNo++;
-        }
-        result.setSuccess(result.getSuccessRecords().size());
-        result.setFailed(result.getFailures().size());  
-        // repository.saveAll(successRecords);
-        return result;
+        return repository.findByAwbNo(awbNo);
     }
 
 }
@@ -0,0 +1,121 @@
+package com.example.demo.service;
+
+import com.example.demo.model.WaybillRecord;
+import com.example.demo.repository.WaybillFileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Makes bulk rows idempotent on {@code CreditReferenceNo}.
+ *
+ * A reference that already has a waybill is answered from the repository's
+ * reference index without calling Bluedart, so re-uploading a file after a
+ * timeout or partial failure only costs the rows that did not go through.
+ * Rows sharing a reference while the first one is still in flight wait for
+ * that call instead of sending their own. Rows without a reference
+ * ({@code NA}) are always sent.
+ *
+ * A {@code generate} that returns no record is a failure, for the caller
+ * and for every row that joined it.
+ */
+@Service
+public class BulkIdempotencyGuard {
+
+    private static final String NO_REFERENCE = "NA";
+
+    private final WaybillFileRepository repository;
+    private final boolean enabled;
+
+    private final Map<String, CompletableFuture<WaybillRecord>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+
+    public BulkIdempotencyGuard(
+            WaybillFileRepository repository,
+            @Value("${bluedart.bulk.idempotent:true}") boolean enabled
+    ) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the existing waybill for {@code creditRef}, or the result of
+     * {@code generate} when there is none yet. At most one {@code generate}
+     * runs per reference at a time.
+     */
+    public WaybillRecord resolve(String creditRef, Supplier<WaybillRecord> generate) {
+        if (!enabled || creditRef == null || creditRef.isBlank() || NO_REFERENCE.equals(creditRef)) {
+            return generate(creditRef, generate);
+        }
+
+        WaybillRecord existing = repository.findLatestByCreditReferenceNo(creditRef);
+        if (existing != null) {
+            reused.incrementAndGet();
+            return existing;
+        }
+
+        CompletableFuture<WaybillRecord> mine = new CompletableFuture<>();
+        CompletableFuture<WaybillRecord> other = inFlight.putIfAbsent(creditRef, mine);
+        if (other != null) {
+            joined.incrementAndGet();
+            return await(other);
+        }
+
+        try {
+            // The previous owner may have saved between the lookup and putIfAbsent.
+            WaybillRecord record = repository.findLatestByCreditReferenceNo(creditRef);
+            if (record != null) {
+                reused.incrementAndGet();
+            } else {
+                record = generate(creditRef, generate);
+                generated.incrementAndGet();
+            }
+            mine.complete(record);
+            return record;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(creditRef, mine);
+        }
+    }
+
+    private static WaybillRecord generate(String creditRef, Supplier<WaybillRecord> generate) {
+        WaybillRecord record = generate.get();
+        if (record == null) {
+            throw new IllegalStateException("Bluedart returned no waybill for reference " + creditRef);
+        }
+        return record;
+    }
+
+    private static WaybillRecord await(CompletableFuture<WaybillRecord> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException
+                    ? (RuntimeException) cause
+                    : new RuntimeException("Bluedart API error", cause);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("inFlight", inFlight.size());
+        stats.put("generated", generated.get());
+        stats.put("reused", reused.get());
+        stats.put("joined", joined.get());
+        return stats;
+    }
+}
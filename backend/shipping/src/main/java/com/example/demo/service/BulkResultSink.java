@@ -0,0 +1,17 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FailureRow;
+import com.example.demo.model.WaybillRecord;
+
+/**
+ * Receives finished bulk rows in row order, on the thread that submits
+ * rows to (or finishes) the {@link BulkWaybillRun}. Unlike
+ * {@link BulkRowListener} it is never called concurrently, so it can write
+ * straight to a report.
+ */
+public interface BulkResultSink {
+
+    void success(int rowNo, WaybillRecord record) throws Exception;
+
+    void failure(FailureRow failure) throws Exception;
+}
@@ -0,0 +1,19 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FailureRow;
+import com.example.demo.model.WaybillRecord;
+
+/**
+ * Receives bulk rows as they complete. Calls arrive on worker threads
+ * and in completion order, not row order.
+ */
+public interface BulkRowListener {
+
+    BulkRowListener NONE = new BulkRowListener() {};
+
+    default void onSuccess(int rowNo, WaybillRecord record) {
+    }
+
+    default void onFailure(FailureRow failure) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.GenerateWaybillRequest;
+
+/**
+ * Receives the rows of a bulk upload as they are read, in file order.
+ * A row that cannot be turned into a request (missing PickupDate, a
+ * non-numeric weight, ...) goes to {@link #invalid} instead of aborting
+ * the rest of the upload.
+ */
+public interface BulkRowSink {
+
+    void accept(GenerateWaybillRequest request);
+
+    void invalid(String reference, String error);
+}
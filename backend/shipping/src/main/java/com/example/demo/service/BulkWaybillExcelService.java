@@ -1,66 +1,175 @@
 package com.example.demo.service;
-import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.dto.FailureRow;
 import com.example.demo.model.WaybillRecord;
-import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-
-import java.io.ByteArrayOutputStream;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Function;
 
 
+/**
+ * Success / failure reports for bulk uploads, written straight to the
+ * destination stream. XLSX goes through SXSSF, which keeps only a fixed
+ * window of rows in memory and spills the rest to a temp file, so heap use
+ * does not grow with the number of rows. CSV is written row by row.
+ * Reports are opened before the first row is known and fed as rows
+ * finish, so callers never need the full list.
+ */
 @Service
 public class BulkWaybillExcelService {
- 
-
-    public byte[] generateSuccessExcel(List<WaybillRecord> records) throws Exception {
-        // Implementation goes here
-        Workbook wb= new XSSFWorkbook();
-        Sheet sheet=wb.createSheet("Success");
-        Row header=sheet.createRow(0);
-        header.createCell(0).setCellValue("AWB No");
-        header.createCell(1).setCellValue("Credit Reference");
-        header.createCell(2).setCellValue("Date");
-
-        int r=1;
-        for(WaybillRecord record: records) {
-            Row row=sheet.createRow(r++);
-            row.createCell(0).setCellValue(record.getAwbNo());
-            row.createCell(1).setCellValue(record.getCreditReferenceNo());
-            row.createCell(2).setCellValue(record.getCreatedAt());
+
+    public enum ReportFormat {
+        XLSX, CSV;
+
+        public String extension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static ReportFormat of(String value) {
+            if (value == null || value.isBlank()) {
+                return XLSX;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported report format: " + value);
+            }
+        }
     }
-    return write(wb);
+
+    private static final String[] SUCCESS_HEADER = {"AWB No", "Credit Reference", "Date"};
+    private static final String[] FAILURE_HEADER = {"Row No", "Credit Reference", "Error Message"};
+
+    @Value("${bluedart.bulk.report-row-window:100}")
+    private int rowWindow;
+
+    /** Writes a report one row at a time, as rows become available. */
+    public interface ReportWriter<T> extends AutoCloseable {
+
+        void write(T row) throws Exception;
+
+        /** Finishes the report; later calls do nothing. The destination stream is flushed, not closed. */
+        @Override
+        void close() throws Exception;
     }
 
-    public byte[] generateFailureExcel(List<FailureRow> failures) throws Exception {
-        // Implementation goes here
-        Workbook wb= new XSSFWorkbook();
-        Sheet sheet=wb.createSheet("Failures");
-        Row header=sheet.createRow(0);
-        header.createCell(0).setCellValue("Row No");
-        header.createCell(1).setCellValue("Credit Reference");
-        header.createCell(2).setCellValue("Error Message");
-
-        int r=1;
-        for(FailureRow failure: failures) {
-            Row row=sheet.createRow(r++);
-            row.createCell(0).setCellValue(failure.getRowNo());
-            row.createCell(1).setCellValue(failure.getReference());
-            row.createCell(2).setCellValue(failure.getError());
+    public ReportWriter<WaybillRecord> openSuccessReport(ReportFormat format, OutputStream out) throws Exception {
+        return open(format, out, "Success", SUCCESS_HEADER, record -> new Object[]{
+                record.getAwbNo(), record.getCreditReferenceNo(), record.getCreatedAt()});
     }
-    return write(wb);
+
+    public ReportWriter<FailureRow> openFailureReport(ReportFormat format, OutputStream out) throws Exception {
+        return open(format, out, "Failures", FAILURE_HEADER, failure -> new Object[]{
+                failure.getRowNo(), failure.getReference(), failure.getError()});
     }
 
+    private <T> ReportWriter<T> open(ReportFormat format, OutputStream out, String sheetName, String[] columns,
+                                     Function<T, Object[]> values) throws Exception {
+        if (format == ReportFormat.CSV) {
+            CSVPrinter printer = csvPrinter(out, columns);
+            return new ReportWriter<T>() {
+                @Override
+                public void write(T row) throws Exception {
+                    Object[] cells = values.apply(row);
+                    for (int i = 0; i < cells.length; i++) {
+                        cells[i] = neutralize(cells[i]);
+                    }
+                    printer.printRecord(cells);
+                }
+
+                @Override
+                public void close() throws Exception {
+                    printer.flush();
+                }
+            };
+        }
+
+        SXSSFWorkbook wb = new SXSSFWorkbook(rowWindow);
+        Sheet sheet = wb.createSheet(sheetName);
+        header(sheet, columns);
+        return new ReportWriter<T>() {
+            private int r = 1;
+            private boolean closed;
+
+            @Override
+            public void write(T row) {
+                Object[] cells = values.apply(row);
+                Row sheetRow = sheet.createRow(r++);
+                for (int i = 0; i < cells.length; i++) {
+                    if (cells[i] instanceof Number) {
+                        sheetRow.createCell(i).setCellValue(((Number) cells[i]).doubleValue());
+                    } else {
+                        sheetRow.createCell(i).setCellValue(cells[i] == null ? null : cells[i].toString());
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws Exception {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    wb.write(out);
+                } finally {
+                    BulkWaybillExcelService.this.close(wb);
+                }
+            }
+        };
+    }
+
+    /**
+     * Spreadsheet applications evaluate a CSV cell starting with one of
+     * {@code = + - @} (or a tab / carriage return) as a formula; prefixing a
+     * quote makes it plain text. XLSX cells are typed, so only CSV needs it.
+     */
+    static Object neutralize(Object value) {
+        if (!(value instanceof String) || ((String) value).isEmpty()) {
+            return value;
+        }
+        String text = (String) value;
+        switch (text.charAt(0)) {
+            case '=':
+            case '+':
+            case '-':
+            case '@':
+            case '\t':
+            case '\r':
+                return "'" + text;
+            default:
+                return text;
+        }
+    }
+
+    private void header(Sheet sheet, String[] columns) {
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < columns.length; i++) {
+            header.createCell(i).setCellValue(columns[i]);
+        }
+    }
+
+    // Not closed: flushing is enough, and the destination stream belongs to the caller.
+    private CSVPrinter csvPrinter(OutputStream out, String[] columns) throws Exception {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        return new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(columns).build());
+    }
 
-private byte[] write(Workbook wb) throws Exception {
-    ByteArrayOutputStream out=new ByteArrayOutputStream();
-    wb.write(out);
-    wb.close();
-    return out.toByteArray();
+    private void close(SXSSFWorkbook wb) throws Exception {
+        // Removes the temp files SXSSF spilled rows into.
+        wb.dispose();
+        wb.close();
     }
 }
@@ -1,76 +1,240 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.GenerateWaybillRequest;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDate;
 import java.time.ZoneId;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class BulkWaybillFileParser {
 
-    public List<Map<String, Object>> parse(MultipartFile file) throws Exception {
+    private static final Logger log = LoggerFactory.getLogger(BulkWaybillFileParser.class);
 
-        String filename = file.getOriginalFilename().toLowerCase();
+    private final WaybillPayloadLogger payloadLogger;
+    private final GenerateWaybillRequest.ApiProfile profile;
+
+    public BulkWaybillFileParser(
+            WaybillPayloadLogger payloadLogger,
+            @Value("${bluedart.login-id}") String loginId,
+            @Value("${bluedart.licence-key}") String licenceKey
+    ) {
+        this.payloadLogger = payloadLogger;
+        this.profile = new GenerateWaybillRequest.ApiProfile(loginId, licenceKey);
+    }
+
+    public List<GenerateWaybillRequest> parse(MultipartFile file) throws Exception {
+        try (InputStream in = file.getInputStream()) {
+            return parse(in, file.getOriginalFilename());
+        }
+    }
+
+    public List<GenerateWaybillRequest> parse(InputStream in, String originalFilename) throws Exception {
+
+        String filename = originalFilename.toLowerCase();
+        List<GenerateWaybillRequest> requests = new ArrayList<>();
+        // No failure report on this path: the first bad row rejects the file.
+        BulkRowSink collect = new BulkRowSink() {
+            @Override
+            public void accept(GenerateWaybillRequest request) {
+                requests.add(request);
+            }
+
+            @Override
+            public void invalid(String reference, String error) {
+                throw new IllegalArgumentException("Row " + (requests.size() + 1) + ": " + error);
+            }
+        };
+        long start = System.nanoTime();
 
         if (filename.endsWith(".csv")) {
-            System.out.println("Parsing CSV file");
-            return parseCsv(file);
+            parseCsv(in, sampled(collect));
+            logParsed(originalFilename, requests.size(), start);
+            return requests;
         } else if (filename.endsWith(".xlsx")) {
-            return parseXlsx(file); 
+            try (OPCPackage pkg = OPCPackage.open(in)) {
+                parseXlsx(pkg, sampled(collect));
+            }
+            logParsed(originalFilename, requests.size(), start);
+            return requests;
         }
 
         throw new IllegalArgumentException("Unsupported file type");
     }
 
+    /**
+     * Streaming mode: hands each row to {@code sink} as soon as it is read,
+     * so generation can start before the file is fully parsed. XLSX files are
+     * opened straight from disk and read with the SAX event model, keeping
+     * heap use independent of the row count. Rows that cannot be turned into
+     * a request are reported to {@link BulkRowSink#invalid} and parsing
+     * carries on with the next row.
+     */
+    public void parse(Path file, String originalFilename, BulkRowSink sink) throws Exception {
+
+        String filename = originalFilename.toLowerCase();
+        int[] rows = {0};
+        BulkRowSink counted = sampled(new BulkRowSink() {
+            @Override
+            public void accept(GenerateWaybillRequest request) {
+                rows[0]++;
+                sink.accept(request);
+            }
+
+            @Override
+            public void invalid(String reference, String error) {
+                rows[0]++;
+                sink.invalid(reference, error);
+            }
+        });
+        long start = System.nanoTime();
+
+        if (filename.endsWith(".csv")) {
+            try (InputStream in = Files.newInputStream(file)) {
+                parseCsv(in, counted);
+            }
+            logParsed(originalFilename, rows[0], start);
+            return;
+        } else if (filename.endsWith(".xlsx")) {
+            try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+                parseXlsx(pkg, counted);
+            }
+            logParsed(originalFilename, rows[0], start);
+            return;
+        }
+
+        throw new IllegalArgumentException("Unsupported file type");
+    }
+
+    /** Passes a sample of parsed rows (redacted) to the payload log. */
+    private BulkRowSink sampled(BulkRowSink sink) {
+        return new BulkRowSink() {
+            @Override
+            public void accept(GenerateWaybillRequest request) {
+                payloadLogger.sample("bulkParse", request);
+                sink.accept(request);
+            }
+
+            @Override
+            public void invalid(String reference, String error) {
+                sink.invalid(reference, error);
+            }
+        };
+    }
+
+    private static void logParsed(String filename, int rows, long startNanos) {
+        log.atInfo()
+                .addKeyValue("file", filename)
+                .addKeyValue("rows", rows)
+                .addKeyValue("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000)
+                .log("Parsed bulk upload");
+    }
+
     /* ================= CSV PARSING ================= */
 
-    private List<Map<String, Object>> parseCsv(MultipartFile file) throws Exception {
+    private void parseCsv(InputStream in, BulkRowSink sink) throws Exception {
+        try (CsvRequestIterator rows = csvRequests(in)) {
+            while (rows.hasNext()) {
+                emit(rows.nextRow(), sink);
+            }
+        }
+    }
+
+    /**
+     * Lazily turns CSV rows into waybill requests. Nothing is read ahead of
+     * the caller, so a consumer that blocks (e.g. {@link BulkWaybillRun#submit})
+     * throttles reading of the file.
+     */
+    public CsvRequestIterator csvRequests(InputStream in) throws IOException {
+        CSVParser parser = CSVFormat.DEFAULT.builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreHeaderCase(true)
+                .setTrim(true)
+                .build()
+                .parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return new CsvRequestIterator(parser);
+    }
 
-    List<Map<String, Object>> requests = new ArrayList<>();
+    public class CsvRequestIterator implements Iterator<GenerateWaybillRequest>, AutoCloseable {
 
-    CSVParser parser = CSVFormat.DEFAULT
-            .withFirstRecordAsHeader()
-            .withIgnoreHeaderCase()
-            .withTrim()
-            .parse(new InputStreamReader(file.getInputStream()));
+        private final CSVParser parser;
+        private final Iterator<CSVRecord> records;
 
-    for (CSVRecord record : parser) {
+        /* Normalized header key per column index, computed once per file. */
+        private final String[] keys;
 
-        Map<String, String> rowData = new HashMap<>();
+        private CsvRequestIterator(CSVParser parser) {
+            this.parser = parser;
+            this.records = parser.iterator();
 
-        // for (String header : parser.getHeaderMap().keySet()) {
-        //     rowData.put(header, record.get(header).trim());
-        // }
+            List<String> headers = parser.getHeaderNames();
+            this.keys = new String[headers.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = headers.get(i)
+                        .replace("\uFEFF", "")   // remove BOM
+                        .replace(" ", "")        // remove spaces
+                        .trim();
+            }
+        }
 
-for (String header : parser.getHeaderMap().keySet()) {
+        @Override
+        public boolean hasNext() {
+            return records.hasNext();
+        }
 
-    String normalizedKey = header
-            .replace("\uFEFF", "")   // remove BOM
-            .replace(" ", "")        // remove spaces
-            .trim();
+        @Override
+        public GenerateWaybillRequest next() {
+            return buildWaybillRequest(nextRow());
+        }
 
-    rowData.put(normalizedKey, record.get(header).trim());
-}
+        private Map<String, String> nextRow() {
+            CSVRecord record = records.next();
 
+            Map<String, String> rowData = new HashMap<>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                rowData.put(keys[i], i < record.size() ? record.get(i).trim() : "");
+            }
+            return rowData;
+        }
 
-        requests.add(buildWaybillRequest(rowData));
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
     }
 
-    return requests;
-}
-
     /* ================= DATE CONVERSION ================= */   
 
 private String toBluedartDate(String dateStr) {
@@ -108,175 +272,147 @@ private String toBluedartDate(String dateStr) {
 
     /* ================= XLSX PARSING ================= */
 
-    private List<Map<String, Object>> parseXlsx(MultipartFile file) throws Exception {
+    private void parseXlsx(OPCPackage pkg, BulkRowSink sink) throws Exception {
 
-    List<Map<String, Object>> requests = new ArrayList<>();
+    XSSFReader reader = new XSSFReader(pkg);
+    ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+    StylesTable styles = reader.getStylesTable();
 
-    Workbook workbook = new XSSFWorkbook(file.getInputStream());
-    Sheet sheet = workbook.getSheetAt(0); // single sheet only
-
-    Row headerRow = sheet.getRow(0);
-    if (headerRow == null) {
+    Iterator<InputStream> sheets = reader.getSheetsData();
+    if (!sheets.hasNext()) {
         throw new RuntimeException("Excel header row is missing");
     }
 
-    DataFormatter formatter = new DataFormatter(); // ⭐ KEY FIX
-
-    for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-        Row row = sheet.getRow(i);
-        if (row == null) continue;
+    SheetRowHandler handler = new SheetRowHandler(sink);
 
-        Map<String, String> rowData = new HashMap<>();
+    try (InputStream sheet = sheets.next()) { // single sheet only
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new XSSFSheetXMLHandler(
+                styles, null, strings, handler, new DataFormatter(), false));
+        parser.parse(new InputSource(sheet));
+    }
 
-        for (int j = 0; j < headerRow.getLastCellNum(); j++) {
-            Cell headerCell = headerRow.getCell(j);
-            Cell cell = row.getCell(j);
+    if (handler.headers == null) {
+        throw new RuntimeException("Excel header row is missing");
+    }
+}
 
-            if (headerCell == null) continue;
+    /**
+     * Receives SAX cell events for one sheet. The first row is taken as the
+     * header; every later row is turned into a request when it ends.
+     */
+    private class SheetRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
 
-            String key = headerCell.getStringCellValue().trim();
-            String value = cell == null ? "" : formatter.formatCellValue(cell).trim();
+        private final BulkRowSink sink;
+        private Map<Integer, String> headers;
+        private Map<Integer, String> cells = new HashMap<>();
 
-            rowData.put(key, value);
+        private SheetRowHandler(BulkRowSink sink) {
+            this.sink = sink;
         }
 
-        requests.add(buildWaybillRequest(rowData));
-    }
+        @Override
+        public void startRow(int rowNum) {
+            cells = new HashMap<>();
+        }
 
-    workbook.close();
-    return requests;
-}
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = new CellReference(cellReference).getCol();
+            cells.put(col, formattedValue == null ? "" : formattedValue.trim());
+        }
 
+        @Override
+        public void endRow(int rowNum) {
+            if (headers == null) {
+                if (rowNum != 0) {
+                    throw new RuntimeException("Excel header row is missing");
+                }
+                headers = cells;
+                return;
+            }
+
+            Map<String, String> rowData = new HashMap<>();
+            for (Map.Entry<Integer, String> header : headers.entrySet()) {
+                rowData.put(header.getValue(), cells.getOrDefault(header.getKey(), ""));
+            }
+
+            emit(rowData, sink);
+        }
 
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
 
     /* ================= ROW → REQUEST ================= */
-private Map<String, Object> buildWaybillRequest(Map<String, String> row) {
-
-    /* ---------- SHIPPER ---------- */
-    Map<String, Object> shipper = new HashMap<>();
-    shipper.put("CustomerCode", row.get("CustomerCode"));
-    shipper.put("CustomerName", row.get("CustomerName"));
-    shipper.put("CustomerMobile", row.get("CustomerMobile"));
-    shipper.put("CustomerAddress1", row.get("CustomerAddress1"));
-    shipper.put("CustomerAddress2", "");
-    shipper.put("CustomerAddress3", "");
-    shipper.put("CustomerAddressinfo", "");
-    shipper.put("CustomerPincode", row.get("CustomerPincode"));
-    shipper.put("CustomerTelephone", "");
-    shipper.put("CustomerEmailID", "test@bd.com");
-    shipper.put("IsToPayCustomer", true);
-    shipper.put("OriginArea", row.get("OriginArea"));
-    shipper.put("Sender", "BulkUpload");
-    shipper.put("VendorCode", "");
-
-    /* ---------- CONSIGNEE ---------- */
-    Map<String, Object> consignee = new HashMap<>();
-    consignee.put("ConsigneeName", row.get("ConsigneeName"));
-    consignee.put("ConsigneeMobile", row.get("ConsigneeMobile"));
-    consignee.put("ConsigneeAddress1", row.get("ConsigneeAddress1"));
-    consignee.put("ConsigneeAddress2", "");
-    consignee.put("ConsigneeAddress3", "");
-    consignee.put("ConsigneeAddressinfo", "");
-    consignee.put("ConsigneePincode", row.get("ConsigneePincode"));
-    consignee.put("ConsigneeTelephone", "");
-    consignee.put("ConsigneeEmailID", "test@bd.com");
-    consignee.put("ConsigneeAttention", "Bulk");
-    consignee.put("AvailableDays", "");
-    consignee.put("AvailableTiming", "");
-
-    /* ---------- SERVICES ---------- */
-    Map<String, Object> services = new HashMap<>();
-    services.put("AWBNo", "");
-    services.put("ProductCode", row.get("ProductCode"));
-    services.put("SubProductCode", row.get("SubProductCode"));
-    services.put("ProductType", 1);
-    services.put("ActualWeight", safeDouble(row.get("ActualWeight")));
-    services.put("DeclaredValue", safeDouble(row.get("DeclaredValue")));
-    services.put("PieceCount", safeInt(row.get("PieceCount")));
-    services.put("ItemCount", safeInt(row.get("PieceCount")));
-    services.put("CollectableAmount", safeDouble(row.get("CollectableAmount")));
-    services.put("CreditReferenceNo", row.get("CreditReferenceNo"));
-    services.put("CreditReferenceNo2", "");
-    services.put("CreditReferenceNo3", "");
-
-    services.put("PickupDate", toBluedartDate(row.get("PickupDate")));
-    services.put("PickupTime", "1600");
-    services.put("PickupMode", "");
-    services.put("PickupType", "");
-    services.put("RegisterPickup", true);
-
-    services.put("PDFOutputNotRequired", true);
-    services.put("PackType", "");
-    services.put("ParcelShopCode", "");
-    services.put("PayableAt", "");
-
-    services.put("IsReversePickup", true);
-    services.put("IsPartialPickup", false);
-    services.put("IsForcePickup", false);
-    services.put("IsDedicatedDeliveryNetwork", false);
-    services.put("IsDutyTaxPaidByShipper", false);
-
-    services.put("TotalCashPaytoCustomer", 0);
-    services.put("Officecutofftime", "");
-    services.put("PreferredPickupTimeSlot", "");
-    services.put("DeliveryTimeSlot", "");
-    services.put("ProductFeature", "");
-    services.put("SpecialInstruction", "");
-    services.put("noOfDCGiven", 0);
-
-    /* ---------- COMMODITY ---------- */
-    Map<String, Object> commodity = new HashMap<>();
-    commodity.put("CommodityDetail1", "General Goods");
-    commodity.put("CommodityDetail2", "");
-    commodity.put("CommodityDetail3", "");
-    services.put("Commodity", commodity);
-
-    /* ---------- DIMENSIONS ---------- */
-    Map<String, Object> dimension = new HashMap<>();
-    dimension.put("Length", 10.0);
-    dimension.put("Breadth", 10.0);
-    dimension.put("Height", 10.0);
-    dimension.put("Count", 1);
-    services.put("Dimensions", List.of(dimension));
-
-    /* ---------- ITEM ---------- */
-    Map<String, Object> item = new HashMap<>();
-    item.put("ItemName", row.get("ItemName"));
-    item.put("ItemValue", safeDouble(row.get("ItemValue")));
-    item.put("Itemquantity", safeInt(row.get("Itemquantity")));
-    item.put("TotalValue", safeDouble(row.get("ItemValue")));
-    item.put("InvoiceNumber", "");
-    item.put("InvoiceDate", toBluedartDate(row.get("PickupDate")));
-    services.put("itemdtl", List.of(item));
-
-    /* ---------- REQUEST ---------- */
-    Map<String, Object> request = new HashMap<>();
-    request.put("Shipper", shipper);
-    request.put("Consignee", consignee);
-    request.put("Services", services);
-
-    /* ---------- PROFILE ---------- */
-    Map<String, Object> profile = new HashMap<>();
-    profile.put("LoginID", "GG940111");
-    profile.put("LicenceKey", "kh7mnhqkmgegoksipxr0urmqesesseup");
-    profile.put("Api_type", "S");
-
-    /* ---------- FINAL PAYLOAD ---------- */
-    Map<String, Object> finalPayload = new HashMap<>();
-    finalPayload.put("Request", request);
-    finalPayload.put("Profile", profile);
-
-    return finalPayload;
+
+    /** Builds the request for one row, or reports the row as invalid. */
+    private void emit(Map<String, String> row, BulkRowSink sink) {
+        GenerateWaybillRequest request;
+        try {
+            request = buildWaybillRequest(row);
+        } catch (RuntimeException e) {
+            sink.invalid(row.get("CreditReferenceNo"), e.getMessage());
+            return;
+        }
+        sink.accept(request);
+    }
+
+private GenerateWaybillRequest buildWaybillRequest(Map<String, String> row) {
+
+    String pickupDate = toBluedartDate(row.get("PickupDate"));
+
+    GenerateWaybillRequest.Shipper shipper = new GenerateWaybillRequest.Shipper(
+            row.get("CustomerCode"),
+            row.get("CustomerName"),
+            row.get("CustomerMobile"),
+            row.get("CustomerAddress1"),
+            row.get("CustomerPincode"),
+            row.get("OriginArea")
+    );
+
+    GenerateWaybillRequest.Consignee consignee = new GenerateWaybillRequest.Consignee(
+            row.get("ConsigneeName"),
+            row.get("ConsigneeMobile"),
+            row.get("ConsigneeAddress1"),
+            row.get("ConsigneePincode")
+    );
+
+    GenerateWaybillRequest.Item item = new GenerateWaybillRequest.Item(
+            row.get("ItemName"),
+            safeDouble(row, "ItemValue"),
+            safeInt(row, "Itemquantity"),
+            pickupDate
+    );
+
+    GenerateWaybillRequest.Services services = new GenerateWaybillRequest.Services(
+            row.get("ProductCode"),
+            row.get("SubProductCode"),
+            safeDouble(row, "ActualWeight"),
+            safeDouble(row, "DeclaredValue"),
+            safeInt(row, "PieceCount"),
+            safeDouble(row, "CollectableAmount"),
+            row.get("CreditReferenceNo"),
+            pickupDate,
+            item
+    );
+
+    return new GenerateWaybillRequest(profile, shipper, consignee, services);
 }
 
-private int safeInt(String value) {
-    if (value == null || value.isBlank()) return 0;
-    return (int) Double.parseDouble(value);
+private int safeInt(Map<String, String> row, String field) {
+    return (int) safeDouble(row, field);
 }
 
-private double safeDouble(String value) {
+private double safeDouble(Map<String, String> row, String field) {
+    String value = row.get(field);
     if (value == null || value.isBlank()) return 0.0;
-    return Double.parseDouble(value);
+    try {
+        return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+        throw new RuntimeException("Invalid " + field + ": " + value);
+    }
 }
 
 
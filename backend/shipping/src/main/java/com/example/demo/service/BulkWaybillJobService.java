@@ -0,0 +1,344 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.dto.BulkWaybillResult;
+import com.example.demo.dto.FailureRow;
+import com.example.demo.dto.GenerateWaybillRequest;
+import com.example.demo.model.BulkJob;
+import com.example.demo.model.WaybillRecord;
+import com.example.demo.service.BulkWaybillExcelService.ReportFormat;
+import com.example.demo.service.BulkWaybillExcelService.ReportWriter;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs bulk uploads in the background.
+ *
+ * Each job gets its own directory under {@code data/jobs/{jobId}} holding
+ * the upload and the generated PDF / Excel artifacts, so concurrent
+ * uploads never overwrite each other. Job directories older than the
+ * configured retention are removed periodically.
+ */
+@Service
+public class BulkWaybillJobService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkWaybillJobService.class);
+
+    public static final String PDF = "bulk.pdf";
+    /** Report base names; the extension follows the job's report format. */
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    /** Successful rows, one JSON record per line, read back to render the PDF. */
+    private static final String SPOOL = "success-spool.ndjson";
+
+    private final BluedartWaybillService waybillService;
+    private final BulkWaybillFileParser bulkFileParser;
+    private final WaybillPdfService pdfService;
+    private final BulkWaybillExcelService excelService;
+    private final ExecutorService jobExecutor;
+    private final WaybillMetrics metrics;
+    private final ObjectMapper spoolMapper = new ObjectMapper();
+
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+    private final Path jobsDir;
+    private final long retentionMillis;
+    private final ScheduledExecutorService cleaner;
+
+    public BulkWaybillJobService(
+            BluedartWaybillService waybillService,
+            BulkWaybillFileParser bulkFileParser,
+            WaybillPdfService pdfService,
+            BulkWaybillExcelService excelService,
+            @Qualifier("bulkJobExecutor") ExecutorService bulkJobExecutor,
+            WaybillMetrics metrics,
+            @Value("${bluedart.bulk.jobs-dir:data/jobs}") String jobsDir,
+            @Value("${bluedart.bulk.job-retention-minutes:1440}") long retentionMinutes
+    ) {
+        this.waybillService = waybillService;
+        this.bulkFileParser = bulkFileParser;
+        this.pdfService = pdfService;
+        this.excelService = excelService;
+        this.jobExecutor = bulkJobExecutor;
+        this.metrics = metrics;
+        this.jobsDir = Path.of(jobsDir);
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bulk-job-cleaner");
+            t.setDaemon(true);
+            return t;
+        });
+        cleaner.scheduleWithFixedDelay(this::cleanupExpiredJobs, 0, 15, TimeUnit.MINUTES);
+    }
+
+    /* ================= SUBMIT ================= */
+
+    public BulkJob submit(MultipartFile file, String size, String reportFormat) throws IOException {
+
+        String filename = file.getOriginalFilename();
+        if (filename == null
+                || !(filename.toLowerCase().endsWith(".csv") || filename.toLowerCase().endsWith(".xlsx"))) {
+            throw new IllegalArgumentException("Unsupported file type");
+        }
+
+        ReportFormat format = ReportFormat.of(reportFormat);
+
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), size, format.extension());
+        Path dir = jobDir(job.getJobId());
+        Files.createDirectories(dir);
+
+        // The multipart temp file is gone once the request returns, keep our own copy.
+        Path upload = dir.resolve("upload-" + Path.of(filename).getFileName());
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, upload);
+        }
+
+        jobs.put(job.getJobId(), job);
+        jobExecutor.execute(() -> run(job, upload, filename));
+        return job;
+    }
+
+    public BulkJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Returns the artifact path, or null if the job does not exist, has not
+     * completed, or did not produce the artifact.
+     */
+    public Path artifact(String jobId, String name) {
+        BulkJob job = jobs.get(jobId);
+        if (job == null || job.getState() != BulkJob.State.COMPLETED) {
+            return null;
+        }
+        Path path = jobDir(jobId).resolve(artifactName(job, name));
+        return Files.exists(path) ? path : null;
+    }
+
+    /* ================= RUN ================= */
+
+    private void run(BulkJob job, Path upload, String filename) {
+        Path dir = upload.getParent();
+        Path spool = dir.resolve(SPOOL);
+        try {
+            job.start();
+
+            ReportFormat format = ReportFormat.of(job.getReportFormat());
+            BulkWaybillResult result;
+            long[] reportNanos = {0};
+
+            // Rows are written to the reports, and successes spooled for the
+            // PDF, as they finish; nothing is kept per row in memory. Artifacts
+            // are written under a temporary name and only published once the
+            // whole job has succeeded, so a download never sees a partial file.
+            Path successReportFile = dir.resolve(artifactName(job, SUCCESS));
+            Path failureReportFile = dir.resolve(artifactName(job, FAILURE));
+            Path pdfFile = dir.resolve(PDF);
+            try (OutputStream successOut = new BufferedOutputStream(Files.newOutputStream(partial(successReportFile)));
+                 OutputStream failureOut = new BufferedOutputStream(Files.newOutputStream(partial(failureReportFile)));
+                 ReportWriter<WaybillRecord> successReport = excelService.openSuccessReport(format, successOut);
+                 ReportWriter<FailureRow> failureReport = excelService.openFailureReport(format, failureOut);
+                 SequenceWriter spooled = spoolMapper.writerFor(WaybillRecord.class)
+                         .withRootValueSeparator("\n")
+                         .writeValues(new BufferedOutputStream(Files.newOutputStream(spool)))) {
+
+                BulkWaybillRun run = waybillService.startBulkRun(new BulkRowListener() {
+                    @Override
+                    public void onSuccess(int rowNo, WaybillRecord record) {
+                        job.rowSucceeded();
+                    }
+
+                    @Override
+                    public void onFailure(FailureRow failure) {
+                        job.rowFailed();
+                    }
+                }, new BulkResultSink() {
+                    @Override
+                    public void success(int rowNo, WaybillRecord record) throws Exception {
+                        long start = System.nanoTime();
+                        successReport.write(record);
+                        spooled.write(record);
+                        reportNanos[0] += System.nanoTime() - start;
+                    }
+
+                    @Override
+                    public void failure(FailureRow failure) throws Exception {
+                        long start = System.nanoTime();
+                        failureReport.write(failure);
+                        reportNanos[0] += System.nanoTime() - start;
+                    }
+                });
+
+                // Rows go to the gateway while the rest of the file is still being read.
+                long parseStart = System.nanoTime();
+                long[] submitNanos = {0};
+                try {
+                    bulkFileParser.parse(upload, filename, new BulkRowSink() {
+                        @Override
+                        public void accept(GenerateWaybillRequest request) {
+                            long submitStart = System.nanoTime();
+                            job.rowSubmitted();
+                            run.submit(request);
+                            submitNanos[0] += System.nanoTime() - submitStart;
+                        }
+
+                        @Override
+                        public void invalid(String reference, String error) {
+                            // Reported under its own row number; the rest of the file still runs.
+                            job.rowSubmitted();
+                            run.reject(reference, error);
+                        }
+                    });
+                } finally {
+                    // Parse time alone: time blocked handing rows to the gateway is excluded.
+                    metrics.record(WaybillMetrics.FILE_PARSE, parseStart + submitNanos[0]);
+                    // Never leave rows running unobserved, even if parsing stopped half way.
+                    result = run.finish();
+                }
+
+                long closeStart = System.nanoTime();
+                successReport.close();
+                failureReport.close();
+                reportNanos[0] += System.nanoTime() - closeStart;
+            }
+            metrics.stage(WaybillMetrics.REPORT_WRITE).record(reportNanos[0], TimeUnit.NANOSECONDS);
+
+            if (result.getSuccess() > 0) {
+                long pdfStart = System.nanoTime();
+                try (MappingIterator<WaybillRecord> records = spoolMapper.readerFor(WaybillRecord.class).readValues(spool.toFile());
+                     OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial(pdfFile)))) {
+                    pdfService.generateBulkPdf(records, job.getSize(), out);
+                }
+                metrics.record(WaybillMetrics.BULK_PDF_RENDER, pdfStart);
+                publish(pdfFile);
+            }
+            publish(successReportFile);
+            publish(failureReportFile);
+
+            job.complete();
+
+        } catch (Exception e) {
+            log.atError()
+                    .addKeyValue("jobId", job.getJobId())
+                    .setCause(e)
+                    .log("Bulk job failed");
+            discardArtifacts(job, dir);
+            job.fail(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(upload);
+                Files.deleteIfExists(spool);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /* ================= CLEANUP ================= */
+
+    private void cleanupExpiredJobs() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+
+        jobs.values().removeIf(job ->
+                job.getCreatedAtMillis() < cutoff
+                        && job.getState() != BulkJob.State.QUEUED
+                        && job.getState() != BulkJob.State.RUNNING);
+
+        if (!Files.isDirectory(jobsDir)) {
+            return;
+        }
+        try (Stream<Path> dirs = Files.list(jobsDir)) {
+            dirs.filter(Files::isDirectory)
+                .filter(dir -> !jobs.containsKey(dir.getFileName().toString()))
+                .filter(dir -> lastModified(dir) < cutoff)
+                .forEach(this::deleteRecursively);
+        } catch (IOException e) {
+            log.warn("Bulk job cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private void deleteRecursively(Path dir) {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            log.atWarn()
+                    .addKeyValue("dir", dir)
+                    .log("Could not delete bulk job directory: {}", e.getMessage());
+        }
+    }
+
+    /** A failed job keeps no artifacts, partial or published. */
+    private void discardArtifacts(BulkJob job, Path dir) {
+        for (String name : new String[]{SUCCESS, FAILURE, PDF}) {
+            Path artifact = dir.resolve(artifactName(job, name));
+            try {
+                Files.deleteIfExists(partial(artifact));
+                Files.deleteIfExists(artifact);
+            } catch (IOException e) {
+                log.atWarn()
+                        .addKeyValue("jobId", job.getJobId())
+                        .addKeyValue("artifact", artifact)
+                        .log("Could not delete bulk job artifact: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** Where an artifact is written until the job has finished. */
+    private static Path partial(Path artifact) {
+        return artifact.resolveSibling(artifact.getFileName() + ".part");
+    }
+
+    private static void publish(Path artifact) throws IOException {
+        Files.move(partial(artifact), artifact, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String artifactName(BulkJob job, String name) {
+        return PDF.equals(name) ? name : name + "." + job.getReportFormat();
+    }
+
+    private Path jobDir(String jobId) {
+        return jobsDir.resolve(jobId);
+    }
+
+    @Override
+    public void destroy() {
+        cleaner.shutdownNow();
+    }
+}
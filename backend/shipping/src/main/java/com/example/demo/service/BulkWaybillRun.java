@@ -0,0 +1,178 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.BulkWaybillResult;
+import com.example.demo.dto.FailureRow;
+import com.example.demo.dto.GenerateWaybillRequest;
+import com.example.demo.model.WaybillRecord;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * One bulk upload in progress.
+ *
+ * Rows are submitted one at a time and executed on the shared bulk
+ * executor. {@link #submit} blocks once {@code maxInFlight} rows are
+ * outstanding, so a producer reading the upload is paced by the gateway.
+ * Row numbers are assigned at submission, which keeps {@link FailureRow}
+ * numbering and the order of {@link BulkWaybillResult} deterministic
+ * regardless of completion order.
+ *
+ * Finished rows are handed to the {@link BulkResultSink} in row order as
+ * soon as every earlier row is done, and then dropped, so a run holds at
+ * most {@code 4 × maxInFlight} rows however long the upload is. Without a
+ * sink the rows are collected into the {@link BulkWaybillResult}.
+ */
+public class BulkWaybillRun {
+
+    private static final int WINDOW_PER_SLOT = 4;
+
+    private final Executor executor;
+    private final Semaphore inFlight;
+    private final int window;
+    private final Function<GenerateWaybillRequest, WaybillRecord> rowHandler;
+    private final Function<GenerateWaybillRequest, String> referenceExtractor;
+    private final BulkRowListener listener;
+    private final BulkResultSink sink;
+
+    /* Submitted rows not yet handed to the sink, in row order. */
+    private final Deque<CompletableFuture<RowOutcome>> pending = new ArrayDeque<>();
+    private final BulkWaybillResult result = new BulkWaybillResult();
+    private int submitted;
+    private int succeeded;
+    private int failed;
+
+    BulkWaybillRun(
+            Executor executor,
+            int maxInFlight,
+            Function<GenerateWaybillRequest, WaybillRecord> rowHandler,
+            Function<GenerateWaybillRequest, String> referenceExtractor,
+            BulkRowListener listener,
+            BulkResultSink sink
+    ) {
+        this.executor = executor;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.window = Math.max(1, maxInFlight) * WINDOW_PER_SLOT;
+        this.rowHandler = rowHandler;
+        this.referenceExtractor = referenceExtractor;
+        this.listener = listener;
+        this.sink = sink != null ? sink : new BulkResultSink() {
+            @Override
+            public void success(int rowNo, WaybillRecord record) {
+                result.getSuccessRecords().add(record);
+            }
+
+            @Override
+            public void failure(FailureRow failure) {
+                result.getFailures().add(failure);
+            }
+        };
+    }
+
+    /** Queues the next row; blocks while the in-flight limit is reached. */
+    public void submit(GenerateWaybillRequest request) {
+        int rowNo = submitted + 1;
+
+        // A slow row holds back delivery of everything after it; wait for it
+        // rather than let finished rows pile up behind it.
+        while (pending.size() >= window) {
+            deliver(pending.poll().join());
+        }
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bulk upload interrupted at row " + rowNo, e);
+        }
+
+        CompletableFuture<RowOutcome> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> process(rowNo, request), executor);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        future.whenComplete((outcome, error) -> inFlight.release());
+        submitted = rowNo;
+        pending.add(future);
+        deliverCompleted();
+    }
+
+    /** Records a row that could not be read as a failure, under the next row number. */
+    public void reject(String reference, String error) {
+        int rowNo = ++submitted;
+        FailureRow failure = new FailureRow(rowNo, reference, error);
+        listener.onFailure(failure);
+        pending.add(CompletableFuture.completedFuture(new RowOutcome(rowNo, null, failure)));
+        deliverCompleted();
+    }
+
+    /**
+     * Waits for every submitted row and hands the rest to the sink. The
+     * returned counts cover the whole run; its lists are filled only when
+     * the run has no sink of its own.
+     */
+    public BulkWaybillResult finish() {
+        while (!pending.isEmpty()) {
+            deliver(pending.poll().join());
+        }
+
+        result.setTotal(submitted);
+        result.setSuccess(succeeded);
+        result.setFailed(failed);
+        return result;
+    }
+
+    private void deliverCompleted() {
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            deliver(pending.poll().join());
+        }
+    }
+
+    private void deliver(RowOutcome outcome) {
+        try {
+            if (outcome.record != null) {
+                succeeded++;
+                sink.success(outcome.rowNo, outcome.record);
+            } else if (outcome.failure != null) {
+                failed++;
+                sink.failure(outcome.failure);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not record bulk row " + outcome.rowNo + ": " + e.getMessage(), e);
+        }
+    }
+
+    private RowOutcome process(int rowNo, GenerateWaybillRequest request) {
+        try {
+            WaybillRecord record = rowHandler.apply(request);
+            if (record == null) {
+                throw new IllegalStateException("No waybill returned");
+            }
+            listener.onSuccess(rowNo, record);
+            return new RowOutcome(rowNo, record, null);
+        } catch (Exception e) {
+            FailureRow failure = new FailureRow(rowNo, referenceExtractor.apply(request), e.getMessage());
+            listener.onFailure(failure);
+            return new RowOutcome(rowNo, null, failure);
+        }
+    }
+
+    private static class RowOutcome {
+        private final int rowNo;
+        private final WaybillRecord record;
+        private final FailureRow failure;
+
+        private RowOutcome(int rowNo, WaybillRecord record, FailureRow failure) {
+            this.rowNo = rowNo;
+            this.record = record;
+            this.failure = failure;
+        }
+    }
+}
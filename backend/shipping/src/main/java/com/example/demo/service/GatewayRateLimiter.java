@@ -0,0 +1,292 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.exception.GatewayLimiterRejectedException;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Client-side pacing for GenerateWayBill, shared by single and bulk calls.
+ *
+ * Two gates, in order:
+ * <ul>
+ *     <li>a token bucket capping the request rate at {@code rate-per-second}
+ *     with bursts up to {@code burst};</li>
+ *     <li>an AIMD concurrency limit: every successful call grows the limit by
+ *     {@code 1/limit} (about +1 per round trip), and a 429, 5xx, I/O timeout
+ *     or a call slower than {@code latency-threshold-ms} multiplies it by
+ *     {@code backoff-ratio}, at most once per {@code backoff-cooldown-ms}.</li>
+ * </ul>
+ * Other failures (4xx validation errors and the like) say nothing about
+ * gateway load and leave the limit unchanged. So do successes of calls that
+ * started with less than half the limit in use: a quiet period proves
+ * nothing about a higher limit, and growing on it would let the limit drift
+ * to the maximum and admit the next burst unchecked.
+ *
+ * Callers wait at most {@code acquire-timeout-ms} for a token and a slot,
+ * then get a {@link GatewayLimiterRejectedException}; a token taken by a
+ * caller that then found no slot is given back.
+ */
+@Service
+public class GatewayRateLimiter {
+
+    private final double ratePerSecond;
+    private final double burst;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final long backoffCooldownNanos;
+    private final long acquireTimeoutNanos;
+
+    /* ---------- Token bucket (guarded by this) ---------- */
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /* ---------- Concurrency limit (guarded by lock) ---------- */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long lastBackoffAt;
+
+    /* ---------- Metrics ---------- */
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong backoffs = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong lastWaitNanos = new AtomicLong();
+    private final Timer waitTimer;
+
+    public GatewayRateLimiter(
+            WaybillMetrics metrics,
+            @Value("${bluedart.gateway.rate-per-second:20}") double ratePerSecond,
+            @Value("${bluedart.gateway.burst:20}") int burst,
+            @Value("${bluedart.gateway.concurrency.initial:8}") int initialLimit,
+            @Value("${bluedart.gateway.concurrency.min:1}") int minLimit,
+            @Value("${bluedart.gateway.concurrency.max:32}") int maxLimit,
+            @Value("${bluedart.gateway.concurrency.latency-threshold-ms:5000}") long latencyThresholdMs,
+            @Value("${bluedart.gateway.concurrency.backoff-ratio:0.5}") double backoffRatio,
+            @Value("${bluedart.gateway.concurrency.backoff-cooldown-ms:1000}") long backoffCooldownMs,
+            @Value("${bluedart.gateway.acquire-timeout-ms:60000}") long acquireTimeoutMs
+    ) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.backoffRatio = Math.min(0.95, Math.max(0.1, backoffRatio));
+        this.backoffCooldownNanos = TimeUnit.MILLISECONDS.toNanos(backoffCooldownMs);
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+        this.waitTimer = metrics.timer("bluedart.gateway.limiter.wait",
+                "Time a GenerateWayBill call queued for a token and a concurrency slot");
+        metrics.gauge("bluedart.gateway.limiter.limit", "Current adaptive concurrency limit",
+                this, GatewayRateLimiter::currentLimit);
+        metrics.gauge("bluedart.gateway.limiter.in.flight", "GenerateWayBill calls holding a slot",
+                this, l -> l.snapshot()[0]);
+        metrics.gauge("bluedart.gateway.limiter.waiting", "Callers queued for a slot",
+                this, l -> l.snapshot()[1]);
+        metrics.counter("bluedart.gateway.limiter.backoffs", "Multiplicative decreases of the limit",
+                backoffs, AtomicLong::get);
+        metrics.counter("bluedart.gateway.limiter.rejected", "Calls that gave up waiting for the limiter",
+                rejected, AtomicLong::get);
+    }
+
+    /** Runs {@code call} once a token and a concurrency slot are available. */
+    public <T> T execute(Supplier<T> call) {
+        long queuedAt = System.nanoTime();
+        long deadline = queuedAt + acquireTimeoutNanos;
+        takeToken(deadline);
+        boolean saturated;
+        try {
+            saturated = acquireSlot(deadline);
+        } catch (RuntimeException e) {
+            returnToken();
+            throw e;
+        }
+        recordWait(System.nanoTime() - queuedAt);
+
+        long start = System.nanoTime();
+        boolean overloaded = true;
+        try {
+            T result = call.get();
+            overloaded = System.nanoTime() - start > latencyThresholdNanos;
+            return result;
+        } catch (RuntimeException e) {
+            overloaded = isOverload(e);
+            throw e;
+        } finally {
+            release(overloaded, saturated);
+        }
+    }
+
+    /** 429, 5xx and timeouts mean the gateway is saturated. */
+    static boolean isOverload(RuntimeException e) {
+        if (e instanceof ResourceAccessException) {
+            return true;
+        }
+        if (e instanceof RestClientResponseException) {
+            int status = ((RestClientResponseException) e).getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return false;
+    }
+
+    /* ================= TOKEN BUCKET ================= */
+
+    private void takeToken(long deadline) {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerSecond / 1e9);
+                refilledAt = now;
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) ((1 - tokens) * 1e9 / ratePerSecond);
+            }
+            if (System.nanoTime() + waitNanos > deadline) {
+                rejected.incrementAndGet();
+                throw new GatewayLimiterRejectedException("Bluedart rate limit: no request token within the acquire timeout");
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for Bluedart rate limit", e);
+            }
+        }
+    }
+
+    /** Gives back a token that was taken for a call that never went out. */
+    private synchronized void returnToken() {
+        if (ratePerSecond > 0) {
+            tokens = Math.min(burst, tokens + 1);
+        }
+    }
+
+    /* ================= CONCURRENCY LIMIT ================= */
+
+    /** @return true if the call starts with at least half the limit in use */
+    private boolean acquireSlot(long deadline) {
+        lock.lock();
+        try {
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new GatewayLimiterRejectedException(
+                                "Bluedart concurrency limit: no slot within the acquire timeout");
+                    }
+                    released.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for Bluedart concurrency limit", e);
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            calls.incrementAndGet();
+            return inFlight * 2 >= limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(boolean overloaded, boolean saturated) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if (overloaded) {
+                // One back-off per cooldown: a burst of failures from the same
+                // overload should not collapse the limit to the floor.
+                if (now - lastBackoffAt >= backoffCooldownNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastBackoffAt = now;
+                    backoffs.incrementAndGet();
+                }
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* ================= METRICS ================= */
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        lastWaitNanos.set(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        waitTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int currentLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** In-flight and waiting counts, read together. */
+    private int[] snapshot() {
+        lock.lock();
+        try {
+            return new int[]{inFlight, waiting};
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting);
+        } finally {
+            lock.unlock();
+        }
+        long count = calls.get();
+        stats.put("minLimit", minLimit);
+        stats.put("maxLimit", maxLimit);
+        stats.put("ratePerSecond", ratePerSecond);
+        stats.put("calls", count);
+        stats.put("backoffs", backoffs.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgWaitMs", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count));
+        stats.put("lastWaitMs", TimeUnit.NANOSECONDS.toMillis(lastWaitNanos.get()));
+        stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        return stats;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.exception.GatewayLimiterRejectedException;
+import com.example.demo.exception.GatewayUnavailableException;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retry and circuit breaking around GenerateWayBill.
+ *
+ * Failures are classified (see {@link ErrorClass}). Only errors where the
+ * request cannot have created a waybill are retried, with full-jitter
+ * exponential backoff, and only while the shared retry budget allows it:
+ * every call earns {@code budget-ratio} of a retry, so under a real outage
+ * retries add at most that fraction of extra load.
+ *
+ * Consecutive gateway failures open the circuit for {@code open-ms}; while
+ * open, calls fail immediately with {@link GatewayUnavailableException}
+ * so a bulk job finishes its remaining rows in milliseconds instead of
+ * timing out on each one. After that one probe call is let through, and
+ * its outcome closes or re-opens the circuit. Outcomes that say nothing
+ * about the gateway's health (a FATAL refusal, a call the local limiter
+ * never sent) leave the circuit as it was.
+ */
+@Service
+public class GatewayResilience {
+
+    private static final Logger log = LoggerFactory.getLogger(GatewayResilience.class);
+
+    public enum ErrorClass {
+        /** Never sent (connect failure, pool lease timeout) or turned away (429, 503): safe to resend. */
+        RETRYABLE,
+        /** Trouble after the request was sent (read timeout or other I/O error, 500, 502, 504): may have created a waybill. */
+        UNCERTAIN,
+        /** The request itself was refused (validation, auth, bad data): resending will not help. */
+        FATAL
+    }
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final double budgetRatio;
+    private final double budgetMax;
+    private final int failureThreshold;
+    private final long openMs;
+
+    /* ---------- Guarded by this ---------- */
+    private double retryBalance;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    /* ---------- Metrics ---------- */
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    public GatewayResilience(
+            WaybillMetrics metrics,
+            @Value("${bluedart.gateway.retry.max-attempts:3}") int maxAttempts,
+            @Value("${bluedart.gateway.retry.base-backoff-ms:200}") long baseBackoffMs,
+            @Value("${bluedart.gateway.retry.max-backoff-ms:5000}") long maxBackoffMs,
+            @Value("${bluedart.gateway.retry.budget-ratio:0.1}") double budgetRatio,
+            @Value("${bluedart.gateway.retry.budget-max:20}") int budgetMax,
+            @Value("${bluedart.gateway.circuit.failure-threshold:10}") int failureThreshold,
+            @Value("${bluedart.gateway.circuit.open-ms:30000}") long openMs
+    ) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMs = Math.max(1, baseBackoffMs);
+        this.maxBackoffMs = Math.max(this.baseBackoffMs, maxBackoffMs);
+        this.budgetRatio = Math.max(0, budgetRatio);
+        this.budgetMax = Math.max(0, budgetMax);
+        this.retryBalance = this.budgetMax;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMs = Math.max(0, openMs);
+
+        metrics.gauge("bluedart.gateway.circuit.state", "0 = closed, 1 = open, 2 = half-open",
+                this, GatewayResilience::stateOrdinal);
+        metrics.counter("bluedart.gateway.retries", "GenerateWayBill attempts that were retries",
+                retries, AtomicLong::get);
+        metrics.counter("bluedart.gateway.retry.budget.exhausted", "Retryable failures not retried for lack of budget",
+                budgetExhausted, AtomicLong::get);
+        metrics.counter("bluedart.gateway.circuit.short.circuited", "Calls refused while the circuit was open",
+                shortCircuited, AtomicLong::get);
+        metrics.counter("bluedart.gateway.circuit.opened", "Times the circuit opened",
+                opened, AtomicLong::get);
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            boolean probe = admit(attempt == 1);
+            try {
+                T result = call.get();
+                onSuccess(probe);
+                return result;
+            } catch (GatewayLimiterRejectedException e) {
+                // Never sent: the gateway's health is as unknown as before.
+                releaseProbe(probe);
+                throw e;
+            } catch (RuntimeException e) {
+                ErrorClass errorClass = classify(e);
+                onFailure(errorClass, probe);
+                if (errorClass != ErrorClass.RETRYABLE || attempt >= maxAttempts || !takeRetry()) {
+                    throw e;
+                }
+                long delay = backoffMs(attempt, e);
+                log.atWarn()
+                        .addKeyValue("attempt", attempt)
+                        .addKeyValue("maxRetries", maxAttempts - 1)
+                        .addKeyValue("delayMs", delay)
+                        .log("Bluedart call failed ({}), retrying", e.getMessage());
+                sleep(delay);
+            }
+        }
+    }
+
+    /* ================= CLASSIFICATION ================= */
+
+    public static ErrorClass classify(Throwable e) {
+        if (e instanceof RestClientResponseException) {
+            int status = ((RestClientResponseException) e).getStatusCode().value();
+            if (status == 429 || status == 503) {
+                return ErrorClass.RETRYABLE;
+            }
+            // 502 and 504 come from a proxy that may already have forwarded the request.
+            return status >= 500 ? ErrorClass.UNCERTAIN : ErrorClass.FATAL;
+        }
+        if (e instanceof ResourceAccessException) {
+            return neverSent(e) ? ErrorClass.RETRYABLE : ErrorClass.UNCERTAIN;
+        }
+        return ErrorClass.FATAL;
+    }
+
+    /**
+     * Connect failures and connection pool lease timeouts happen before any
+     * byte of the request is written; every other I/O error may come after.
+     */
+    private static boolean neverSent(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException
+                    || t instanceof UnknownHostException
+                    || t instanceof ConnectTimeoutException
+                    || t instanceof ConnectionRequestTimeoutException) {
+                return true;
+            }
+            if (t instanceof SocketTimeoutException) {
+                return String.valueOf(t.getMessage()).toLowerCase(Locale.ROOT).contains("connect");
+            }
+        }
+        return false;
+    }
+
+    /* ================= CIRCUIT ================= */
+
+    /** @return true if this call is the half-open probe */
+    private synchronized boolean admit(boolean firstAttempt) {
+        if (firstAttempt) {
+            retryBalance = Math.min(budgetMax, retryBalance + budgetRatio);
+        }
+        if (state == State.CLOSED) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN && now - openedAt >= openMs) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        shortCircuited.incrementAndGet();
+        throw new GatewayUnavailableException(Math.max(0, openedAt + openMs - now));
+    }
+
+    private synchronized void onSuccess(boolean probe) {
+        consecutiveFailures = 0;
+        if (probe) {
+            probeInFlight = false;
+            state = State.CLOSED;
+            log.info("Bluedart gateway circuit closed");
+        }
+    }
+
+    /** Lets the next call probe again, without changing the circuit. */
+    private synchronized void releaseProbe(boolean probe) {
+        if (probe) {
+            probeInFlight = false;
+        }
+    }
+
+    private synchronized void onFailure(ErrorClass errorClass, boolean probe) {
+        if (errorClass == ErrorClass.FATAL) {
+            // A refused request is about the request, not the gateway's health.
+            releaseProbe(probe);
+            return;
+        }
+        consecutiveFailures++;
+        if (probe || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            probeInFlight = false;
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            opened.incrementAndGet();
+            log.atError()
+                    .addKeyValue("consecutiveFailures", consecutiveFailures)
+                    .addKeyValue("openMs", openMs)
+                    .log("Bluedart gateway circuit opened");
+        }
+    }
+
+    /* ================= RETRY ================= */
+
+    private synchronized boolean takeRetry() {
+        if (retryBalance < 1) {
+            budgetExhausted.incrementAndGet();
+            return false;
+        }
+        retryBalance -= 1;
+        retries.incrementAndGet();
+        return true;
+    }
+
+    /** Full jitter, but never sooner than a 429's Retry-After. */
+    private long backoffMs(int attempt, RuntimeException e) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        return Math.max(delay, Math.min(maxBackoffMs, retryAfterMs(e)));
+    }
+
+    private static long retryAfterMs(RuntimeException e) {
+        if (!(e instanceof RestClientResponseException)) {
+            return 0;
+        }
+        HttpHeaders headers = ((RestClientResponseException) e).getResponseHeaders();
+        String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        try {
+            return retryAfter == null ? 0 : TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException ex) {
+            return 0; // HTTP-date form; fall back to the jittered delay
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while backing off from Bluedart", e);
+        }
+    }
+
+    /* ================= METRICS ================= */
+
+    private synchronized int stateOrdinal() {
+        return state.ordinal();
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("consecutiveFailures", consecutiveFailures);
+        stats.put("opened", opened.get());
+        stats.put("shortCircuited", shortCircuited.get());
+        stats.put("retries", retries.get());
+        stats.put("retryBudgetExhausted", budgetExhausted.get());
+        stats.put("retryBudget", Math.floor(retryBalance * 10) / 10);
+        return stats;
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.model.WaybillRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Rendered single-waybill PDFs keyed by (awbNo, size). An LRU map bounded by
+ * total bytes sits in front of an optional on-disk tier, so reprints of the
+ * same label are served without touching iText.
+ *
+ * Entries carry the record version ({@link WaybillRecord#getCreatedAt()}),
+ * so a waybill that is saved again is re-rendered rather than served stale.
+ * Writing a new version to disk deletes the older ones, and the disk tier
+ * is trimmed, least recently used first, once it grows past
+ * {@code disk-max-bytes}.
+ *
+ * Concurrent misses for the same label share one load: the first caller
+ * reads or renders it, the others wait for that result.
+ */
+@Service
+public class WaybillLabelCache {
+
+    private static final Logger log = LoggerFactory.getLogger(WaybillLabelCache.class);
+
+    private static final String LABEL_4X6 = "LABEL_4X6";
+    private static final String A4 = "A4";
+
+    private final WaybillPdfService pdfService;
+    private final WaybillMetrics metrics;
+    private final long maxBytes;
+    private final Path diskDir;
+    private final long diskMaxBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    /* Loads in progress, keyed by file name (key + version). */
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+
+    /* Bytes held by the disk tier (guarded by diskLock). */
+    private final Object diskLock = new Object();
+    private long diskBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong prerendered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    public WaybillLabelCache(
+            WaybillPdfService pdfService,
+            WaybillMetrics metrics,
+            @Value("${bluedart.label-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${bluedart.label-cache.disk-enabled:false}") boolean diskEnabled,
+            @Value("${bluedart.label-cache.dir:data/labels}") String dir,
+            @Value("${bluedart.label-cache.disk-max-bytes:1073741824}") long diskMaxBytes
+    ) {
+        this.pdfService = pdfService;
+        this.metrics = metrics;
+        this.maxBytes = maxBytes;
+        this.diskDir = diskEnabled ? Paths.get(dir) : null;
+        this.diskMaxBytes = diskMaxBytes;
+        if (diskDir != null) {
+            diskBytes = scanDisk();
+        }
+    }
+
+    /** Sizes other than LABEL_4X6 render as A4, so they share one cache entry. */
+    public static String normalizeSize(String size) {
+        return LABEL_4X6.equals(size) ? LABEL_4X6 : A4;
+    }
+
+    /** Validator for the label; changes only when the record itself is replaced. */
+    public static String etag(WaybillRecord record, String size) {
+        return "W/\"" + record.getAwbNo() + "-" + normalizeSize(size) + "-" + version(record) + "\"";
+    }
+
+    public byte[] get(WaybillRecord record, String size) throws Exception {
+        String normalized = normalizeSize(size);
+        String key = key(record.getAwbNo(), normalized);
+        String version = version(record);
+
+        byte[] pdf = cached(key, version);
+        if (pdf != null) {
+            hits.incrementAndGet();
+            return pdf;
+        }
+        return load(record, normalized, key, version, false);
+    }
+
+    /**
+     * Renders the label ahead of its first download unless it is already
+     * held. Does not count towards hits or misses.
+     */
+    public void warm(WaybillRecord record, String size) throws Exception {
+        String normalized = normalizeSize(size);
+        String key = key(record.getAwbNo(), normalized);
+        String version = version(record);
+
+        if (cached(key, version) != null) {
+            return;
+        }
+        load(record, normalized, key, version, true);
+    }
+
+    /** Reads the label from disk or renders it, at most once per key and version at a time. */
+    private byte[] load(WaybillRecord record, String size, String key, String version, boolean warming)
+            throws Exception {
+        String file = fileName(key, version);
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlight = loading.putIfAbsent(file, mine);
+        if (inFlight != null) {
+            coalesced.incrementAndGet();
+            return await(inFlight);
+        }
+
+        try {
+            // Another load may have finished between the memory check and the claim.
+            byte[] pdf = cached(key, version);
+            if (pdf == null) {
+                pdf = readDisk(key, version);
+                if (pdf != null) {
+                    if (!warming) {
+                        diskHits.incrementAndGet();
+                    }
+                } else {
+                    (warming ? prerendered : misses).incrementAndGet();
+                    pdf = render(record, size);
+                    writeDisk(key, version, pdf);
+                }
+                store(key, version, pdf);
+            }
+            mine.complete(pdf);
+            return pdf;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(file, mine);
+        }
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> load) throws Exception {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private byte[] render(WaybillRecord record, String size) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return pdfService.generatePdf(record, size);
+        } finally {
+            metrics.record(WaybillMetrics.PDF_RENDER, start);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("prerendered", prerendered.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("diskEnabled", diskDir != null);
+        if (diskDir != null) {
+            synchronized (diskLock) {
+                stats.put("diskBytes", diskBytes);
+            }
+            stats.put("diskMaxBytes", diskMaxBytes);
+            stats.put("diskEvictions", diskEvictions.get());
+        }
+        return stats;
+    }
+
+    private byte[] cached(String key, String version) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.version.equals(version) ? entry.pdf : null;
+        }
+    }
+
+    private void store(String key, String version, byte[] pdf) {
+        if (pdf.length > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(version, pdf));
+            if (previous != null) {
+                totalBytes -= previous.pdf.length;
+            }
+            totalBytes += pdf.length;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().pdf.length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private byte[] readDisk(String key, String version) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(fileName(key, version));
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            byte[] pdf = Files.readAllBytes(file);
+            // The modification time doubles as last access for trimming.
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return pdf;
+        } catch (IOException e) {
+            log.atWarn()
+                    .addKeyValue("file", file)
+                    .log("Failed to read cached label: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, String version, byte[] pdf) {
+        if (diskDir == null) {
+            return;
+        }
+        String name = fileName(key, version);
+        try {
+            Files.createDirectories(diskDir);
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.write(tmp, pdf);
+            Files.move(tmp, diskDir.resolve(name),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The disk tier is best effort; the label is still served from memory.
+            log.atWarn()
+                    .addKeyValue("label", key)
+                    .log("Failed to write cached label: {}", e.getMessage());
+            return;
+        }
+
+        synchronized (diskLock) {
+            diskBytes += pdf.length - deleteOtherVersions(key, name);
+            if (diskBytes > diskMaxBytes) {
+                trimDisk();
+            }
+        }
+    }
+
+    /** Deletes the files of earlier versions of {@code key}; returns the bytes freed. */
+    private long deleteOtherVersions(String key, String keep) {
+        long freed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(diskDir, key + "_*.pdf")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.equals(keep) && name.matches(Pattern.quote(key) + "_[0-9a-f]+\\.pdf")) {
+                    long size = Files.size(file);
+                    if (Files.deleteIfExists(file)) {
+                        freed += size;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.atWarn()
+                    .addKeyValue("label", key)
+                    .log("Failed to remove old labels: {}", e.getMessage());
+        }
+        return freed;
+    }
+
+    /**
+     * Deletes the least recently used files until the tier is back under 90%
+     * of its limit, so a full tier is not rescanned on every write.
+     */
+    private void trimDisk() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDir, "*.pdf")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.atWarn()
+                    .addKeyValue("dir", diskDir)
+                    .log("Failed to trim label cache: {}", e.getMessage());
+            return;
+        }
+        Map<Path, Long> touched = new HashMap<>();
+        for (Path file : files) {
+            touched.put(file, lastModified(file));
+        }
+        files.sort(Comparator.comparingLong(touched::get));
+
+        long target = diskMaxBytes / 10 * 9;
+        for (Iterator<Path> it = files.iterator(); diskBytes > target && it.hasNext(); ) {
+            Path file = it.next();
+            try {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    diskBytes -= size;
+                    diskEvictions.incrementAndGet();
+                }
+            } catch (IOException ignored) {
+                // gone already, or in use; try the next one
+            }
+        }
+    }
+
+    /** Bytes already on disk; leftover temp files from a crash are removed. */
+    private long scanDisk() {
+        if (!Files.isDirectory(diskDir)) {
+            return 0;
+        }
+        long bytes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(diskDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".pdf")) {
+                    bytes += Files.size(file);
+                }
+            }
+        } catch (IOException e) {
+            log.atWarn()
+                    .addKeyValue("dir", diskDir)
+                    .log("Failed to scan label cache: {}", e.getMessage());
+        }
+        return bytes;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String fileName(String key, String version) {
+        return key + "_" + version + ".pdf";
+    }
+
+    private static String key(String awbNo, String size) {
+        return awbNo.replaceAll("[^A-Za-z0-9-]", "_") + "_" + size;
+    }
+
+    private static String version(WaybillRecord record) {
+        return Integer.toHexString(String.valueOf(record.getCreatedAt()).hashCode());
+    }
+
+    private static final class Entry {
+        private final String version;
+        private final byte[] pdf;
+
+        private Entry(String version, byte[] pdf) {
+            this.version = version;
+            this.pdf = pdf;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs waybill request payloads with personal data masked.
+ *
+ * Payloads go to their own logger ({@value #LOGGER}), so their volume is set
+ * independently of the application log: sampled payloads of accepted
+ * requests are logged at DEBUG, payloads of failed requests at WARN. Nothing
+ * is serialized or redacted unless the level is enabled and the request is
+ * sampled, so a disabled payload log costs one level check.
+ *
+ * A field is masked when its name contains one of {@code redact-keys}
+ * (case-insensitive), at any depth.
+ */
+@Service
+public class WaybillPayloadLogger {
+
+    static final String LOGGER = "com.example.demo.payload";
+    private static final Logger log = LoggerFactory.getLogger(LOGGER);
+
+    private static final TextNode MASK = TextNode.valueOf("***");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final double sampleRate;
+    private final double failureSampleRate;
+    private final List<String> redactKeys = new ArrayList<>();
+    private final int maxChars;
+
+    public WaybillPayloadLogger(
+            @Value("${bluedart.logging.payload.sample-rate:0.01}") double sampleRate,
+            @Value("${bluedart.logging.payload.failure-sample-rate:1.0}") double failureSampleRate,
+            @Value("${bluedart.logging.payload.redact-keys:Name,Mobile,Telephone,Address,Email,Attention,Pincode,LoginID,LicenceKey,Token}")
+            List<String> redactKeys,
+            @Value("${bluedart.logging.payload.max-chars:4096}") int maxChars
+    ) {
+        this.sampleRate = sampleRate;
+        this.failureSampleRate = failureSampleRate;
+        for (String key : redactKeys) {
+            if (!key.isBlank()) {
+                this.redactKeys.add(key.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.maxChars = maxChars;
+    }
+
+    /** A sample of payloads, at DEBUG. */
+    public void sample(String source, Object payload) {
+        if (log.isDebugEnabled() && sampled(sampleRate)) {
+            log.atDebug()
+                    .addKeyValue("source", source)
+                    .addKeyValue("payload", redact(payload))
+                    .log("Waybill payload");
+        }
+    }
+
+    /** The payload of a failed request, at WARN (subject to failure-sample-rate). */
+    public void failure(String source, Object payload, Throwable error) {
+        if (log.isWarnEnabled() && sampled(failureSampleRate)) {
+            log.atWarn()
+                    .addKeyValue("source", source)
+                    .addKeyValue("payload", redact(payload))
+                    .setCause(error)
+                    .log("Waybill payload of failed request");
+        }
+    }
+
+    private static boolean sampled(double rate) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /* ================= REDACTION ================= */
+
+    String redact(Object payload) {
+        try {
+            JsonNode tree = payload instanceof byte[]
+                    ? mapper.readTree((byte[]) payload)
+                    : mapper.valueToTree(payload);
+            mask(tree);
+            String json = mapper.writeValueAsString(tree);
+            return json.length() > maxChars ? json.substring(0, maxChars) + "…" : json;
+        } catch (Exception e) {
+            // Never fall back to the raw payload: it is exactly what must not leak.
+            return "<unreadable payload: " + e.getClass().getSimpleName() + ">";
+        }
+    }
+
+    private void mask(JsonNode node) {
+        if (node instanceof ObjectNode) {
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                if (sensitive(field.getKey()) && !field.getValue().isContainerNode()) {
+                    if (!field.getValue().isNull() && !field.getValue().asText().isEmpty()) {
+                        field.setValue(MASK);
+                    }
+                } else {
+                    mask(field.getValue());
+                }
+            }
+        } else if (node != null && node.isArray()) {
+            node.forEach(this::mask);
+        }
+    }
+
+    private boolean sensitive(String key) {
+        String lower = key.toLowerCase(Locale.ROOT);
+        for (String redactKey : redactKeys) {
+            if (lower.contains(redactKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
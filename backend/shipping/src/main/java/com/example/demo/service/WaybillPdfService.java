@@ -1,40 +1,69 @@
 package com.example.demo.service;
 
 import com.example.demo.model.WaybillRecord;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.core.io.ClassPathResource;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 @Service
 public class WaybillPdfService {
 
     private static final DateTimeFormatter OUTPUT_DATE =
             DateTimeFormatter.ofPattern("dd-MM-yyyy");
 
+    private final WaybillRenderResources resources;
+    private final ExecutorService renderExecutor;
+
+    @Value("${bluedart.pdf.parallel:true}")
+    private boolean parallelRender;
+
+    @Value("${bluedart.pdf.chunk-size:250}")
+    private int chunkSize;
+
+    @Value("${bluedart.pdf.max-pending-chunks:16}")
+    private int maxPendingChunks;
+
+    public WaybillPdfService(
+            WaybillRenderResources resources,
+            @Qualifier("pdfRenderExecutor") ExecutorService pdfRenderExecutor
+    ) {
+        this.resources = resources;
+        this.renderExecutor = pdfRenderExecutor;
+    }
+
     @SuppressWarnings("unchecked")
     public byte[] generatePdf(WaybillRecord record,String size) throws Exception {
 
         //Document document = new Document(PageSize.A4, 20, 20, 20, 20);
         Document document = createDocument(size);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, out);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
         document.open();
 
         if("LABEL_4X6".equals(size)){
             //Single label
-            document.add(createWaybillBlock(record));
+            document.add(createWaybillBlock(record, writer.getDirectContent()));
         } else {
             //A4 with 4 labels
            PdfPTable grid = new PdfPTable(2);
@@ -42,7 +71,7 @@ public class WaybillPdfService {
            grid.setWidths(new float[]{1f, 1f});
 
            for (int i = 0; i < 4; i++) {
-               PdfPCell cell = new PdfPCell(createWaybillBlock(record));
+               PdfPCell cell = new PdfPCell(createWaybillBlock(record, writer.getDirectContent()));
                cell.setPadding(6);
                cell.setBorderWidth(0.5f);
                grid.addCell(cell);
@@ -56,28 +85,199 @@ public class WaybillPdfService {
 
 
     public byte[] generateBulkPdf(List<WaybillRecord> records ,String size) throws Exception {
+        ByteArrayOutputStream out=new ByteArrayOutputStream();
+        generateBulkPdf(records, size, out);
+        return out.toByteArray();
+    }
+
+    public void generateBulkPdf(List<WaybillRecord> records, String size, OutputStream out) throws Exception {
+        generateBulkPdf(records.iterator(), size, out);
+    }
+
+    /**
+     * Writes one label per page to {@code out}. Large batches are split into
+     * chunks rendered in parallel (see {@link #renderParallel}); otherwise
+     * pages are streamed directly. Records are pulled from the iterator only
+     * as chunks are scheduled, so they can be streamed from disk.
+     * {@code out} is flushed but not closed.
+     */
+    public void generateBulkPdf(Iterator<WaybillRecord> records, String size, OutputStream out) throws Exception {
+        if (!parallelRender || chunkSize <= 0) {
+            renderSequential(records, size, out);
+            return;
+        }
+        List<WaybillRecord> first = nextChunk(records);
+        if (records.hasNext()) {
+            renderParallel(first, records, size, out);
+        } else {
+            renderSequential(first.iterator(), size, out);
+        }
+    }
+
+    private List<WaybillRecord> nextChunk(Iterator<WaybillRecord> records) {
+        List<WaybillRecord> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize && records.hasNext()) {
+            chunk.add(records.next());
+        }
+        return chunk;
+    }
+
+    /**
+     * Streams labels page by page. Each page, and the barcode templates drawn
+     * on it, is written out and released as soon as the page ends, and the
+     * xref is compressed, so heap use does not grow with the number of labels.
+     */
+    private void renderSequential(Iterator<WaybillRecord> records, String size, OutputStream out) throws Exception {
 
         Document document=createDocument(size);
-        ByteArrayOutputStream out=new ByteArrayOutputStream();
-        PdfWriter.getInstance(document,out);
+        PdfWriter writer=PdfWriter.getInstance(document,out);
+        writer.setFullCompression();
+        writer.setCloseStream(false);
         document.open();
 
-        if("LABEL_4X6".equals(size)) {
+        List<PdfTemplate> pageTemplates=new ArrayList<>();
 
-            for(WaybillRecord record:records){
-                document.add(createWaybillBlock(record));
-                document.newPage(); 
+        try {
+            while(records.hasNext()) {
+                WaybillRecord record=records.next();
+                document.add(createWaybillBlock(record, writer.getDirectContent(), pageTemplates));
+                document.newPage();
+
+                for(PdfTemplate template:pageTemplates) {
+                    writer.releaseTemplate(template);
+                }
+                pageTemplates.clear();
+                writer.flush();
             }
-        } else {
+        } catch (Exception e) {
+            closeAfterFailure(document, e);
+            throw e;
+        }
 
-            for(WaybillRecord record:records) {
-                document.add(createWaybillBlock(record));
-                document.newPage();
+        document.close();
+        out.flush();
+    }
+
+    /**
+     * Renders fixed-size chunks to temp files on the render pool, then
+     * concatenates them in submission order with PdfSmartCopy, which also
+     * collapses the logo and font objects each chunk carries into one copy.
+     * Chunks are merged as soon as they are ready, so merging overlaps with
+     * rendering of later chunks. At most {@code max-pending-chunks} chunks are
+     * scheduled ahead of the merge, which bounds the records held in memory.
+     */
+    private void renderParallel(List<WaybillRecord> first, Iterator<WaybillRecord> rest, String size, OutputStream out)
+            throws Exception {
+
+        Document document = new Document();
+        PdfSmartCopy copy = new PdfSmartCopy(document, out);
+        copy.setFullCompression();
+        copy.setCloseStream(false);
+        document.open();
+
+        Deque<Chunk> pending = new ArrayDeque<>();
+        try {
+            schedule(first, size, pending);
+            while (!pending.isEmpty()) {
+                while (rest.hasNext() && pending.size() < Math.max(1, maxPendingChunks)) {
+                    schedule(nextChunk(rest), size, pending);
+                }
+
+                Path chunkFile = pending.peek().future.get();
+                PdfReader reader = new PdfReader(chunkFile.toString());
+                try {
+                    for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                        copy.addPage(copy.getImportedPage(reader, page));
+                    }
+                    copy.freeReader(reader);
+                    copy.flush();
+                } finally {
+                    reader.close();
+                    Files.deleteIfExists(chunkFile);
+                }
+                pending.poll();
             }
+        } catch (Exception e) {
+            discardChunks(pending);
+            closeAfterFailure(document, e);
+            throw e;
         }
 
         document.close();
-        return out.toByteArray();
+        out.flush();
+    }
+
+    private void schedule(List<WaybillRecord> records, String size, Deque<Chunk> pending) {
+        Chunk chunk = new Chunk();
+        pending.add(chunk);
+        chunk.future = renderExecutor.submit(() -> renderChunk(records, size, chunk));
+    }
+
+    /**
+     * The render task owns its temp file until it hands it over; a chunk
+     * abandoned before that deletes the file itself, so a cancelled or
+     * interrupted render never leaves one behind.
+     */
+    private Path renderChunk(List<WaybillRecord> records, String size, Chunk chunk) throws Exception {
+        Path file = Files.createTempFile("waybill-chunk-", ".pdf");
+        try (OutputStream chunkOut = new BufferedOutputStream(Files.newOutputStream(file))) {
+            renderSequential(records.iterator(), size, chunkOut);
+        } catch (Exception e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        if (!chunk.handOver(file)) {
+            throw new CancellationException("Bulk PDF merge was abandoned");
+        }
+        return file;
+    }
+
+    private void discardChunks(Collection<Chunk> pending) {
+        for (Chunk chunk : pending) {
+            chunk.abandon();
+            if (chunk.future != null) {
+                chunk.future.cancel(true);
+            }
+        }
+    }
+
+    /** Releases a document whose rendering failed, keeping the original error. */
+    private static void closeAfterFailure(Document document, Exception failure) {
+        try {
+            if (document.isOpen()) {
+                document.close();
+            }
+        } catch (Exception e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /** One chunk of a parallel render and the temp file it produced, if any. */
+    private static final class Chunk {
+        private Future<Path> future;
+        private Path file;
+        private boolean abandoned;
+
+        /** @return false if the merge already gave up on this chunk; the file is then deleted */
+        synchronized boolean handOver(Path rendered) throws IOException {
+            if (abandoned) {
+                Files.deleteIfExists(rendered);
+                return false;
+            }
+            file = rendered;
+            return true;
+        }
+
+        synchronized void abandon() {
+            abandoned = true;
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // temp dir; nothing more to do
+                }
+            }
+        }
     }
 
     
@@ -86,38 +286,31 @@ public class WaybillPdfService {
 
     @SuppressWarnings("unchecked")
     private PdfPTable createWaybillBlock(
-            WaybillRecord record
+            WaybillRecord record,
+            PdfContentByte cb
+    ) throws Exception {
+        return createWaybillBlock(record, cb, null);
+    }
+
+    /** @param templates if not null, receives the barcode template so the caller can release it */
+    private PdfPTable createWaybillBlock(
+            WaybillRecord record,
+            PdfContentByte cb,
+            List<PdfTemplate> templates
     ) throws Exception {
 
               /* ---------- Fonts ---------- */
-        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11);
-        Font sectionFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9);
-        Font labelFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 8);
-        Font valueFont = FontFactory.getFont(FontFactory.HELVETICA, 8);
+        Font titleFont = resources.titleFont();
+        Font sectionFont = resources.sectionFont();
+        Font labelFont = resources.labelFont();
+        Font valueFont = resources.valueFont();
 
       PdfPTable block = new PdfPTable(1);
         block.setWidthPercentage(100);
 
-        PdfPTable headerTable=new PdfPTable(2);
-        headerTable.setWidthPercentage(100);
-
- /* ---------- Logo ---------- */
-
-        Image logo=loadLogo();
-        logo.scaleToFit(60, 40);
-        logo.setAlignment(Image.ALIGN_CENTER);
-
-        PdfPCell logoCell = new PdfPCell(logo);
-        logoCell.setBorder(Rectangle.NO_BORDER);
-        logoCell.setPadding(4);
-        headerTable.addCell(logoCell);
+ /* ---------- Logo + company name (prebuilt) ---------- */
 
-        PdfPCell companyNameCell = new PdfPCell(new Paragraph("Development Talkies", titleFont));
-        companyNameCell.setBorder(Rectangle.NO_BORDER);
-        companyNameCell.setPadding(4);
-        headerTable.addCell(companyNameCell);
-
-        PdfPCell headerCell = new PdfPCell(headerTable);
+        PdfPCell headerCell = new PdfPCell(resources.newHeaderTable());
         headerCell.setBorder(Rectangle.NO_BORDER);
         block.addCell(headerCell);
 
@@ -179,7 +372,11 @@ public class WaybillPdfService {
         block.addCell(getCODAmountMessageCell(services, valueFont));
 
         /* ---------- Barcode ---------- */
-        Image barcode = barcodeImage(record.getAwbNo());
+        PdfTemplate barcodeTemplate = barcodeTemplate(record.getAwbNo(), cb);
+        if (templates != null) {
+            templates.add(barcodeTemplate);
+        }
+        Image barcode = Image.getInstance(barcodeTemplate);
         barcode.scaleToFit(200, 50);
         barcode.setAlignment(Image.ALIGN_CENTER);
 
@@ -263,7 +460,7 @@ public class WaybillPdfService {
         return new PdfPCell(new Phrase("", font));
     }
 
-    Font fontBold = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9);
+    Font fontBold = resources.sectionFont();
 
     //String text = "Amount to be collected : ₹" + codAmount;
 
@@ -309,12 +506,17 @@ private String getOrderType(Map<String, Object> services) {
 }
 
 
-    private Image barcodeImage(String text) throws Exception {
-        BitMatrix matrix = new MultiFormatWriter()
-                .encode(text, BarcodeFormat.CODE_128, 300, 60);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        MatrixToImageWriter.writeToStream(matrix, "png", baos);
-        return Image.getInstance(baos.toByteArray());
+    /**
+     * CODE_128 drawn as vector bars into a PDF template (iText's Barcode128),
+     * instead of rasterizing with ZXing and decoding the PNG back. Bar height
+     * keeps the old 5:1 aspect ratio so the label layout is unchanged.
+     */
+    private PdfTemplate barcodeTemplate(String text, PdfContentByte cb) {
+        Barcode128 code = new Barcode128();
+        code.setCode(text);
+        code.setFont(null); // AWB is printed separately below the bars
+        code.setBarHeight(code.getBarcodeSize().getWidth() / 5f);
+        return code.createTemplateWithBarcode(cb, null, null);
     }
 
     private String formatDate(String date) {
@@ -335,12 +537,6 @@ private String getOrderType(Map<String, Object> services) {
         return val == null ? "NA" : val.toString();
     }
 
-    private Image loadLogo() throws Exception {
-        // Load logo from resources
-        InputStream is=new ClassPathResource("static/logo.png").getInputStream();
-        return Image.getInstance(is.readAllBytes());
-    }
-
     private Document createDocument(String size) {
         if("LABEL_4X6".equals(size)){
             return new Document(new Rectangle(288f, 432f), 8, 8, 8, 8); // 4x6 inches in points
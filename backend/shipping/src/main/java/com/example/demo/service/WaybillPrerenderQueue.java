@@ -0,0 +1,121 @@
+package com.example.demo.service;
+
+import com.example.demo.model.WaybillRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders labels into {@link WaybillLabelCache} in the background once a
+ * waybill has been persisted, so the first download is served from the
+ * cache instead of paying full render latency.
+ *
+ * The queue is bounded; when it is full new records are dropped (and
+ * counted) and their labels are rendered on first download as before.
+ */
+@Service
+public class WaybillPrerenderQueue implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WaybillPrerenderQueue.class);
+
+    private final WaybillLabelCache labelCache;
+    private final boolean enabled;
+    private final List<String> sizes;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    public WaybillPrerenderQueue(
+            WaybillLabelCache labelCache,
+            @Value("${bluedart.label-prerender.enabled:false}") boolean enabled,
+            @Value("${bluedart.label-prerender.sizes:A4,LABEL_4X6}") List<String> sizes,
+            @Value("${bluedart.label-prerender.threads:1}") int threads,
+            @Value("${bluedart.label-prerender.queue-capacity:10000}") int queueCapacity
+    ) {
+        this.labelCache = labelCache;
+        this.enabled = enabled;
+        this.sizes = sizes;
+
+        AtomicInteger counter = new AtomicInteger();
+        int size = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(
+                size, size, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "label-prerender-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+    }
+
+    /** Queues the record's labels for rendering; never blocks the caller. */
+    public void enqueue(WaybillRecord record) {
+        if (!enabled) {
+            return;
+        }
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> render(record, enqueuedAt));
+            enqueued.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void render(WaybillRecord record, long enqueuedAt) {
+        long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt);
+        lastLagMs.set(lag);
+        maxLagMs.accumulateAndGet(lag, Math::max);
+
+        for (String size : sizes) {
+            try {
+                labelCache.warm(record, size);
+                rendered.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.atWarn()
+                        .addKeyValue("awbNo", record.getAwbNo())
+                        .addKeyValue("size", size)
+                        .log("Label pre-render failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("sizes", sizes);
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("enqueued", enqueued.get());
+        stats.put("rendered", rendered.get());
+        stats.put("failed", failed.get());
+        stats.put("dropped", dropped.get());
+        stats.put("lastLagMs", lastLagMs.get());
+        stats.put("maxLagMs", maxLagMs.get());
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+
+/**
+ * Fonts, the decoded logo and the company header, built once and shared
+ * by every label render. Nothing here is modified after construction.
+ */
+@Component
+public class WaybillRenderResources {
+
+    private final Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11);
+    private final Font sectionFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 9);
+    private final Font labelFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 8);
+    private final Font valueFont = FontFactory.getFont(FontFactory.HELVETICA, 8);
+
+    private final Image logo;
+    private final PdfPTable headerPrototype;
+
+    public WaybillRenderResources() throws Exception {
+        this.logo = loadLogo();
+        this.headerPrototype = buildHeader();
+    }
+
+    public Font titleFont() {
+        return titleFont;
+    }
+
+    public Font sectionFont() {
+        return sectionFont;
+    }
+
+    public Font labelFont() {
+        return labelFont;
+    }
+
+    public Font valueFont() {
+        return valueFont;
+    }
+
+    public Image logo() {
+        return logo;
+    }
+
+    /**
+     * A fresh copy of the logo + company name table. PdfPTable keeps layout
+     * state once added to a document, so each label gets its own copy of the
+     * prebuilt rows rather than the shared instance.
+     */
+    public PdfPTable newHeaderTable() {
+        return new PdfPTable(headerPrototype);
+    }
+
+    private PdfPTable buildHeader() {
+        PdfPTable headerTable = new PdfPTable(2);
+        headerTable.setWidthPercentage(100);
+
+        PdfPCell logoCell = new PdfPCell(logo);
+        logoCell.setBorder(Rectangle.NO_BORDER);
+        logoCell.setPadding(4);
+        headerTable.addCell(logoCell);
+
+        PdfPCell companyNameCell = new PdfPCell(new Paragraph("Development Talkies", titleFont));
+        companyNameCell.setBorder(Rectangle.NO_BORDER);
+        companyNameCell.setPadding(4);
+        headerTable.addCell(companyNameCell);
+
+        return headerTable;
+    }
+
+    private Image loadLogo() throws Exception {
+        // Load logo from resources
+        try (InputStream is = new ClassPathResource("static/logo.png").getInputStream()) {
+            Image image = Image.getInstance(is.readAllBytes());
+            image.scaleToFit(60, 40);
+            image.setAlignment(Image.ALIGN_CENTER);
+            return image;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalStorageEngineTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final long NEVER = 3_600_000;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void dropsATornTailOnStartup() throws Exception {
+		for (String format : WaybillRecordCodec.FORMATS) {
+			WaybillRecordCodec codec = WaybillRecordCodec.of(format);
+			Path file = dir.resolve("torn" + codec.extension());
+
+			JournalStorageEngine engine = journal(file, codec, 10_000);
+			engine.appendAll(List.of(record("A1", "R1"), record("A2", "R2")));
+			engine.close();
+			long complete = Files.size(file);
+
+			// What a crash half way through writing a third record leaves behind.
+			byte[] frame = frame(codec, record("A3", "R3"));
+			Files.write(file, Arrays.copyOf(frame, frame.length - 3), StandardOpenOption.APPEND);
+
+			engine = journal(file, codec, 10_000);
+			try {
+				assertEquals(complete, Files.size(file), format);
+				assertEquals(List.of("A1", "A2"), awbs(engine.loadAll()), format);
+
+				engine.append(record("A4", "R4"));
+				assertEquals(List.of("A1", "A2", "A4"), awbs(engine.loadAll()), format);
+			} finally {
+				engine.close();
+			}
+		}
+	}
+
+	@Test
+	void compactionKeepsTheLatestRecordPerAwb() throws Exception {
+		WaybillRecordCodec codec = WaybillRecordCodec.of("ndjson");
+		Path file = dir.resolve("waybills.ndjson");
+
+		JournalStorageEngine engine = journal(file, codec, 1);
+		engine.appendAll(List.of(record("A1", "old"), record("A2", "R2")));
+		engine.close();
+		Files.write(file, "not a record\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		engine = journal(file, codec, 1);
+		try {
+			engine.append(record("A1", "new"));
+			long before = Files.size(file);
+
+			engine.compact();
+
+			assertTrue(Files.size(file) < before);
+			List<WaybillRecord> records = engine.loadAll();
+			assertEquals(List.of("A2", "A1"), awbs(records));
+			assertEquals("new", records.get(1).getCreditReferenceNo());
+			assertEquals(2, Files.readAllLines(file).size());
+
+			// The append channel was reopened on the compacted file.
+			engine.append(record("A3", "R3"));
+			assertEquals(List.of("A2", "A1", "A3"), awbs(engine.loadAll()));
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	void compactionWaitsForTheThreshold() throws Exception {
+		WaybillRecordCodec codec = WaybillRecordCodec.of("ndjson");
+		Path file = dir.resolve("waybills.ndjson");
+
+		JournalStorageEngine engine = journal(file, codec, 10);
+		try {
+			engine.appendAll(List.of(record("A1", "v1"), record("A1", "v2"), record("A1", "v3")));
+			long before = Files.size(file);
+
+			engine.compact();
+
+			assertEquals(before, Files.size(file));
+			assertEquals(3, engine.loadAll().size());
+		} finally {
+			engine.close();
+		}
+	}
+
+	private static JournalStorageEngine journal(Path file, WaybillRecordCodec codec, int compactThreshold) {
+		return new JournalStorageEngine(file, null, MAPPER, codec, 64, NEVER, NEVER, compactThreshold);
+	}
+
+	private static byte[] frame(WaybillRecordCodec codec, WaybillRecord record) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.writeFrame(out, codec.encode(record));
+		return out.toByteArray();
+	}
+
+	private static WaybillRecord record(String awbNo, String creditRef) {
+		return new WaybillRecord(awbNo, creditRef, Map.of("Services", Map.of("PieceCount", 1)), Map.of());
+	}
+
+	private static List<String> awbs(List<WaybillRecord> records) {
+		return records.stream().map(WaybillRecord::getAwbNo).collect(Collectors.toList());
+	}
+}
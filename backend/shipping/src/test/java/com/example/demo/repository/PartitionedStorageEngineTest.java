@@ -0,0 +1,153 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedStorageEngineTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final WaybillRecordCodec CODEC = WaybillRecordCodec.of("ndjson");
+	private static final long NEVER = 3_600_000;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void migratesLegacyHistoryIntoDayPartitions() {
+		JournalStorageEngine legacy = journal(dir.resolve("waybills.ndjson"));
+		legacy.appendAll(List.of(
+				record("A1", "2024-01-01T10:00:00"),
+				record("A2", "2024-01-02T10:00:00"),
+				record("A3", "2024-01-01T11:00:00")));
+		legacy.close();
+
+		PartitionedStorageEngine engine = partitioned(() -> journal(dir.resolve("waybills.ndjson")));
+		try {
+			assertTrue(Files.exists(dir.resolve("waybills/2024-01-01.ndjson")));
+			assertTrue(Files.exists(dir.resolve("waybills/2024-01-02.ndjson")));
+			assertFalse(Files.exists(dir.resolve("waybills.migrating")));
+			assertEquals(List.of("A1", "A3", "A2"), awbs(engine.loadAll()));
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	void discardsAnInterruptedMigrationAndRunsItAgain() throws Exception {
+		JournalStorageEngine legacy = journal(dir.resolve("waybills.ndjson"));
+		legacy.appendAll(List.of(record("A1", "2024-01-01T10:00:00"), record("A2", "2024-01-02T10:00:00")));
+		legacy.close();
+
+		// What a crash half way through the first import leaves behind.
+		Files.createDirectories(dir.resolve("waybills.migrating"));
+		Files.writeString(dir.resolve("waybills.migrating/2024-01-01.ndjson"), "{\"awbNo\":\"A1\"");
+
+		PartitionedStorageEngine engine = partitioned(() -> journal(dir.resolve("waybills.ndjson")));
+		try {
+			assertFalse(Files.exists(dir.resolve("waybills.migrating")));
+			assertEquals(List.of("A1", "A2"), awbs(engine.loadAll()));
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	void neverImportsOverExistingPartitions() throws Exception {
+		PartitionedStorageEngine first = partitioned(null);
+		first.append(record("P1", "2024-03-01T10:00:00"));
+		first.close();
+
+		JournalStorageEngine legacy = journal(dir.resolve("waybills.ndjson"));
+		legacy.append(record("L1", "2024-01-01T10:00:00"));
+		legacy.close();
+
+		PartitionedStorageEngine engine = partitioned(() -> {
+			throw new AssertionError("legacy journal opened although partitions exist");
+		});
+		try {
+			assertEquals(List.of("P1"), awbs(engine.loadAll()));
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	void compressesColdPartitionsAndReloadsThem() throws Exception {
+		String cold = LocalDate.now().minusDays(30) + "T10:00:00";
+		String today = LocalDate.now() + "T10:00:00";
+		Path partitions = dir.resolve("waybills");
+
+		PartitionedStorageEngine engine = partitioned(null);
+		engine.appendAll(List.of(record("C1", cold), record("T1", today)));
+		engine.maintain();
+
+		String coldDay = cold.substring(0, 10);
+		assertTrue(Files.exists(partitions.resolve(coldDay + ".ndjson.gz")));
+		assertFalse(Files.exists(partitions.resolve(coldDay + ".ndjson")));
+		assertTrue(Files.exists(partitions.resolve(LocalDate.now() + ".ndjson")));
+
+		// A late write to a cold day lands in a plain file, then joins the archive.
+		engine.append(record("C2", cold));
+		assertTrue(Files.exists(partitions.resolve(coldDay + ".ndjson")));
+		engine.maintain();
+		assertFalse(Files.exists(partitions.resolve(coldDay + ".ndjson")));
+		engine.close();
+
+		PartitionedStorageEngine reopened = partitioned(null);
+		try {
+			assertEquals(List.of("C1", "C2", "T1"), awbs(reopened.loadAll()));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	void refusesToStartOnPartitionsInAnotherFormat() {
+		PartitionedStorageEngine ndjson = partitioned(null);
+		ndjson.append(record("N1", "2024-01-01T10:00:00"));
+		ndjson.close();
+
+		WaybillRecordCodec smile = WaybillRecordCodec.of("smile");
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> new PartitionedStorageEngine(
+				dir.resolve("waybills"), null, smile,
+				file -> new JournalStorageEngine(file, null, MAPPER, smile, 64, NEVER, NEVER, 10_000),
+				7, NEVER));
+		assertTrue(e.getMessage().contains("convert-dir"));
+	}
+
+	private PartitionedStorageEngine partitioned(Supplier<WaybillStorageEngine> legacy) {
+		return new PartitionedStorageEngine(dir.resolve("waybills"), legacy, CODEC, this::journal, 7, NEVER);
+	}
+
+	private JournalStorageEngine journal(Path file) {
+		return new JournalStorageEngine(file, null, MAPPER, CODEC, 64, NEVER, NEVER, 10_000);
+	}
+
+	static WaybillRecord record(String awbNo, String createdAt) {
+		return MAPPER.convertValue(Map.of(
+				"awbNo", awbNo,
+				"creditReferenceNo", "REF-" + awbNo,
+				"createdAt", createdAt,
+				"request", Map.of("Services", Map.of("ProductCode", "A")),
+				"response", Map.of()), WaybillRecord.class);
+	}
+
+	static List<String> awbs(List<WaybillRecord> records) {
+		return records.stream().map(WaybillRecord::getAwbNo).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.demo.repository;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.dto.WaybillHistoryFilter;
+import com.example.demo.dto.WaybillPage;
+import com.example.demo.model.WaybillRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.example.demo.repository.PartitionedStorageEngineTest.awbs;
+import static com.example.demo.repository.PartitionedStorageEngineTest.record;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WaybillFileRepositoryTest {
+
+	@Test
+	void cursorPointsAtTheSameRecordAfterARestart() {
+		List<WaybillRecord> history = List.of(
+				record("A1", "2024-01-01T10:00:00"),
+				record("A2", "2024-01-01T10:00:00.5"),
+				record("A3", "2024-01-01T11:00:00"),
+				record("A4", "2024-01-02T09:00:00"));
+
+		WaybillPage<WaybillRecord> first = repository(history).findPage(WaybillHistoryFilter.NONE, null, 2);
+		assertEquals(List.of("A4", "A3"), awbs(first.getItems()));
+
+		// Compaction or another replay order must not move the cursor.
+		List<WaybillRecord> replayed = new ArrayList<>(history);
+		Collections.reverse(replayed);
+		WaybillPage<WaybillRecord> second = repository(replayed)
+				.findPage(WaybillHistoryFilter.NONE, first.getNextCursor(), 2);
+
+		assertEquals(List.of("A2", "A1"), awbs(second.getItems()));
+		assertNull(second.getNextCursor());
+	}
+
+	@Test
+	void resavedAwbMovesToItsNewPosition() {
+		WaybillFileRepository repository = repository(List.of(
+				record("A1", "2024-01-01T10:00:00"),
+				record("A2", "2024-01-01T11:00:00")));
+		repository.save(record("A1", "2024-01-01T12:00:00"));
+
+		assertEquals(List.of("A1", "A2"),
+				awbs(repository.findPage(WaybillHistoryFilter.NONE, null, 10).getItems()));
+	}
+
+	@Test
+	void filtersByReferenceFromItsIndex() {
+		WaybillFileRepository repository = repository(List.of(
+				record("A1", "2024-01-01T10:00:00"),
+				record("B1", "2024-01-02T10:00:00")));
+		// Created now, under the same reference as A1.
+		repository.save(new WaybillRecord("A2", "REF-A1", Map.of(), Map.of()));
+
+		WaybillHistoryFilter byReference = new WaybillHistoryFilter(null, null, "REF-A1", null);
+		assertEquals(List.of("A2", "A1"), awbs(repository.findPage(byReference, null, 10).getItems()));
+		assertEquals(List.of("A1", "A2"), awbs(repository.stream(byReference).collect(Collectors.toList())));
+
+		WaybillPage<WaybillRecord> first = repository.findPage(byReference, null, 1);
+		assertEquals(List.of("A1"), awbs(repository.findPage(byReference, first.getNextCursor(), 1).getItems()));
+
+		WaybillHistoryFilter inRange = new WaybillHistoryFilter(null, LocalDate.parse("2024-01-31"), "REF-A1", null);
+		assertEquals(List.of("A1"), awbs(repository.findPage(inRange, null, 10).getItems()));
+	}
+
+	private static WaybillFileRepository repository(List<WaybillRecord> history) {
+		return new WaybillFileRepository(new ListEngine(history), new WaybillMetrics(new SimpleMeterRegistry()));
+	}
+
+	private static final class ListEngine implements WaybillStorageEngine {
+
+		private final List<WaybillRecord> records;
+
+		private ListEngine(List<WaybillRecord> records) {
+			this.records = new ArrayList<>(records);
+		}
+
+		@Override
+		public List<WaybillRecord> loadAll() {
+			return new ArrayList<>(records);
+		}
+
+		@Override
+		public void append(WaybillRecord record) {
+			records.add(record);
+		}
+
+		@Override
+		public void appendAll(List<WaybillRecord> batch) {
+			records.addAll(batch);
+		}
+	}
+}
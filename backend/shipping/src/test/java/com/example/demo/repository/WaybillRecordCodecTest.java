@@ -0,0 +1,84 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WaybillRecordCodecTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	void roundTripsRecordsInEveryFormat() throws Exception {
+		List<WaybillRecord> records = List.of(
+				record("A1", "plain"),
+				// Newlines and non-ASCII must survive both the payload and the framing.
+				record("A2", "line one\nline two ✓"),
+				record("A3", ""));
+
+		for (String format : WaybillRecordCodec.FORMATS) {
+			WaybillRecordCodec codec = WaybillRecordCodec.of(format);
+			byte[] file = frames(codec, records);
+
+			List<WaybillRecord> decoded = new ArrayList<>();
+			long complete = codec.forEachFrame(new ByteArrayInputStream(file), file.length, frame -> {
+				try {
+					decoded.add(codec.decode(frame));
+				} catch (Exception e) {
+					throw new AssertionError(format + ": undecodable frame", e);
+				}
+			});
+
+			assertEquals(file.length, complete, format);
+			assertEquals(records.size(), decoded.size(), format);
+			for (int i = 0; i < records.size(); i++) {
+				assertEquals(MAPPER.valueToTree(records.get(i)), MAPPER.valueToTree(decoded.get(i)), format);
+			}
+		}
+	}
+
+	@Test
+	void skipsATornFinalFrame() throws Exception {
+		for (String format : WaybillRecordCodec.FORMATS) {
+			WaybillRecordCodec codec = WaybillRecordCodec.of(format);
+			byte[] first = frames(codec, List.of(record("A1", "first")));
+			byte[] both = frames(codec, List.of(record("A1", "first"), record("A2", "second")));
+			byte[] torn = Arrays.copyOf(both, both.length - 3);
+
+			List<byte[]> frames = new ArrayList<>();
+			long complete = codec.forEachFrame(new ByteArrayInputStream(torn), torn.length, frames::add);
+
+			assertEquals(1, frames.size(), format);
+			assertEquals(first.length, complete, format);
+		}
+	}
+
+	private static byte[] frames(WaybillRecordCodec codec, List<WaybillRecord> records) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (WaybillRecord record : records) {
+			codec.writeFrame(out, codec.encode(record));
+		}
+		return out.toByteArray();
+	}
+
+	private static WaybillRecord record(String awbNo, String note) {
+		return MAPPER.convertValue(Map.of(
+				"awbNo", awbNo,
+				"creditReferenceNo", "REF-" + awbNo,
+				"createdAt", "2024-01-01T10:00:00",
+				"request", Map.of(
+						"Services", Map.of("ActualWeight", 1.5, "PieceCount", 2, "Note", note),
+						"Dimensions", List.of(Map.of("Length", 10.0), Map.of("Length", 12.5))),
+				"response", Map.of("GenerateWayBillResult", Map.of("AWBNo", awbNo, "IsError", false))),
+				WaybillRecord.class);
+	}
+}
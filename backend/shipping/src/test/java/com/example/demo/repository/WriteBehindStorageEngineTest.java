@@ -0,0 +1,145 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.WaybillRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindStorageEngineTest {
+
+	@Test
+	void drainsTheQueueOnClose() {
+		MemoryEngine memory = new MemoryEngine();
+		memory.delayMs = 5;
+		WriteBehindStorageEngine engine = new WriteBehindStorageEngine(memory, 10, 50, 1_000, 1_000, false);
+
+		List<String> saved = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			engine.append(record("A" + i));
+			saved.add("A" + i);
+		}
+		engine.close();
+
+		assertEquals(saved, memory.awbs());
+		assertTrue(memory.closed);
+	}
+
+	@Test
+	void durableSavesReturnOnlyOnceForced() {
+		MemoryEngine memory = new MemoryEngine();
+		WriteBehindStorageEngine engine = new WriteBehindStorageEngine(memory, 10, 50, 1_000, 1_000, true);
+		try {
+			engine.append(record("A1"));
+
+			assertEquals(List.of("A1"), memory.awbs());
+			assertEquals(List.of("A1"), memory.forcedAwbs);
+		} finally {
+			engine.close();
+		}
+	}
+
+	@Test
+	void durableSavesSeeTheWriteFailure() {
+		MemoryEngine memory = new MemoryEngine();
+		memory.failure = new IllegalStateException("disk full");
+		WriteBehindStorageEngine engine = new WriteBehindStorageEngine(memory, 10, 50, 1_000, 1_000, true);
+		try {
+			RuntimeException e = assertThrows(RuntimeException.class, () -> engine.append(record("A1")));
+			assertEquals("disk full", e.getMessage());
+		} finally {
+			memory.failure = null;
+			engine.close();
+		}
+	}
+
+	@Test
+	void failsInsteadOfBlockingWhenTheQueueStaysFull() throws Exception {
+		MemoryEngine memory = new MemoryEngine();
+		memory.gate = new CountDownLatch(1);
+		WriteBehindStorageEngine engine = new WriteBehindStorageEngine(memory, 1, 1, 1, 50, false);
+
+		engine.append(record("A1"));
+		assertTrue(memory.entered.await(5, TimeUnit.SECONDS));
+		engine.append(record("A2"));
+
+		RuntimeException e = assertThrows(RuntimeException.class, () -> engine.append(record("A3")));
+		assertTrue(e.getMessage().contains("queue still full"));
+
+		memory.gate.countDown();
+		engine.close();
+		assertEquals(List.of("A1", "A2"), memory.awbs());
+	}
+
+	private static WaybillRecord record(String awbNo) {
+		return new WaybillRecord(awbNo, "REF-" + awbNo, Map.of(), Map.of());
+	}
+
+	/** Records appends in memory; can be slowed down, held at a gate, or made to fail. */
+	private static final class MemoryEngine implements WaybillStorageEngine {
+
+		private final List<WaybillRecord> records = Collections.synchronizedList(new ArrayList<>());
+		private final List<String> forcedAwbs = Collections.synchronizedList(new ArrayList<>());
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private volatile long delayMs;
+		private volatile CountDownLatch gate;
+		private volatile RuntimeException failure;
+		private volatile boolean closed;
+
+		@Override
+		public List<WaybillRecord> loadAll() {
+			return new ArrayList<>(records);
+		}
+
+		@Override
+		public void append(WaybillRecord record) {
+			appendAll(List.of(record));
+		}
+
+		@Override
+		public void appendAll(List<WaybillRecord> batch) {
+			entered.countDown();
+			try {
+				if (gate != null) {
+					gate.await();
+				}
+				Thread.sleep(delayMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			records.addAll(batch);
+		}
+
+		@Override
+		public void force() {
+			if (failure != null) {
+				throw failure;
+			}
+			forcedAwbs.clear();
+			forcedAwbs.addAll(awbs());
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+		private List<String> awbs() {
+			synchronized (records) {
+				return records.stream().map(WaybillRecord::getAwbNo).collect(Collectors.toList());
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BluedartAuthServiceTest {
+
+	private final StubLogin gateway = new StubLogin();
+	private final BluedartAuthService service = new BluedartAuthService(gateway);
+
+	@AfterEach
+	void tearDown() {
+		gateway.release.countDown();
+		service.destroy();
+	}
+
+	@Test
+	void answersFromTheValidTokenWhileTheBackgroundRefreshLogsIn() throws Exception {
+		String valid = jwt(TimeUnit.HOURS.toSeconds(1));
+		gateway.tokens.add(valid);
+		assertEquals(valid, service.getJwtToken());
+
+		gateway.blockNextLogin();
+		gateway.tokens.add(jwt(TimeUnit.HOURS.toSeconds(2)));
+		CompletableFuture<Void> refresh = CompletableFuture.runAsync(
+				() -> ReflectionTestUtils.invokeMethod(service, "backgroundRefresh"));
+		assertTrue(gateway.entered.await(10, TimeUnit.SECONDS));
+
+		// A 401 on an older token must not queue behind the slow login.
+		String answered = CompletableFuture.supplyAsync(() -> service.refreshAfterUnauthorized("older"))
+				.get(5, TimeUnit.SECONDS);
+		assertEquals(valid, answered);
+
+		gateway.release.countDown();
+		refresh.get(10, TimeUnit.SECONDS);
+		assertEquals(2, gateway.logins);
+	}
+
+	@Test
+	void keepsRefreshingWhenTheTokenArrivesAlreadyExpired() {
+		gateway.tokens.add(jwt(-60));
+		service.getJwtToken();
+
+		ScheduledFuture<?> next = (ScheduledFuture<?>) ReflectionTestUtils.getField(service, "scheduledRefresh");
+		assertFalse(next == null || next.isDone());
+		assertTrue(next.getDelay(TimeUnit.HOURS) >= 22);
+	}
+
+	/** A token whose exp claim is {@code secondsFromNow} away. */
+	private static String jwt(long secondsFromNow) {
+		long exp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + secondsFromNow;
+		Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+		String claims = base64.encodeToString(("{\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8));
+		return "e30." + claims + ".sig";
+	}
+
+	private static final class StubLogin extends RestTemplate {
+		final BlockingQueue<String> tokens = new LinkedBlockingQueue<>();
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		private volatile boolean block;
+		volatile int logins;
+
+		void blockNextLogin() {
+			block = true;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> ResponseEntity<T> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity,
+				Class<T> responseType, Object... uriVariables) {
+			logins++;
+			if (block) {
+				block = false;
+				entered.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return (ResponseEntity<T>) ResponseEntity.ok(Map.of("JWTToken", tokens.remove()));
+		}
+	}
+}
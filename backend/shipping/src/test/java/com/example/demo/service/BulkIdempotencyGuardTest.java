@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.model.WaybillRecord;
+import com.example.demo.repository.WaybillFileRepository;
+import com.example.demo.repository.WaybillStorageEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkIdempotencyGuardTest {
+
+	private final WaybillFileRepository repository = new WaybillFileRepository(
+			new MemoryEngine(), new WaybillMetrics(new SimpleMeterRegistry()));
+
+	@Test
+	void answersAKnownReferenceWithoutCallingTheGateway() {
+		WaybillRecord saved = record("A1", "R1");
+		repository.save(saved);
+		BulkIdempotencyGuard guard = new BulkIdempotencyGuard(repository, true);
+
+		WaybillRecord resolved = guard.resolve("R1", () -> {
+			throw new AssertionError("gateway called for a known reference");
+		});
+
+		assertSame(saved, resolved);
+		assertEquals(1L, guard.stats().get("reused"));
+		assertEquals(0L, guard.stats().get("generated"));
+	}
+
+	@Test
+	void rowsSharingAReferenceJoinTheCallInFlight() throws Exception {
+		BulkIdempotencyGuard guard = new BulkIdempotencyGuard(repository, true);
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+
+		CompletableFuture<WaybillRecord> first = CompletableFuture.supplyAsync(() -> guard.resolve("R1", () -> {
+			calls.incrementAndGet();
+			entered.countDown();
+			await(release);
+			return record("A1", "R1");
+		}));
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<WaybillRecord> second = CompletableFuture.supplyAsync(() -> guard.resolve("R1", () -> {
+			calls.incrementAndGet();
+			return record("A2", "R1");
+		}));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!Long.valueOf(1).equals(guard.stats().get("joined")) && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+
+		assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, calls.get());
+		assertEquals(1L, guard.stats().get("joined"));
+		assertEquals(0, guard.stats().get("inFlight"));
+	}
+
+	@Test
+	void noRecordFromTheGatewayIsAFailure() {
+		BulkIdempotencyGuard guard = new BulkIdempotencyGuard(repository, true);
+
+		assertThrows(IllegalStateException.class, () -> guard.resolve("R1", () -> null));
+		assertThrows(IllegalStateException.class, () -> guard.resolve("NA", () -> null));
+		assertEquals(0L, guard.stats().get("generated"));
+
+		// The failed attempt must not block the next one.
+		assertEquals("A1", guard.resolve("R1", () -> record("A1", "R1")).getAwbNo());
+	}
+
+	@Test
+	void rowsWithoutAReferenceAreAlwaysSent() {
+		BulkIdempotencyGuard guard = new BulkIdempotencyGuard(repository, true);
+		repository.save(record("A1", "NA"));
+		AtomicInteger calls = new AtomicInteger();
+
+		guard.resolve("NA", () -> record("A" + calls.incrementAndGet(), "NA"));
+		guard.resolve("NA", () -> record("A" + calls.incrementAndGet(), "NA"));
+
+		assertEquals(2, calls.get());
+	}
+
+	private static WaybillRecord record(String awbNo, String creditRef) {
+		return new WaybillRecord(awbNo, creditRef, Map.of(), Map.of());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static final class MemoryEngine implements WaybillStorageEngine {
+
+		private final List<WaybillRecord> records = new ArrayList<>();
+
+		@Override
+		public synchronized List<WaybillRecord> loadAll() {
+			return new ArrayList<>(records);
+		}
+
+		@Override
+		public synchronized void append(WaybillRecord record) {
+			records.add(record);
+		}
+
+		@Override
+		public synchronized void appendAll(List<WaybillRecord> batch) {
+			records.addAll(batch);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.model.BulkJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkWaybillJobServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor();
+	private final CountDownLatch hold = new CountDownLatch(1);
+	private BulkWaybillJobService service;
+
+	@AfterEach
+	void tearDown() {
+		hold.countDown();
+		jobExecutor.shutdownNow();
+		if (service != null) {
+			service.destroy();
+		}
+	}
+
+	@Test
+	void servesNoArtifactBeforeTheJobCompletes() throws Exception {
+		// Keeps the job queued behind this task until the test releases it.
+		jobExecutor.execute(() -> {
+			try {
+				hold.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		// Nothing but the upload copy is needed: the job fails as soon as it runs.
+		service = new BulkWaybillJobService(null, null, null, null, jobExecutor,
+				new WaybillMetrics(new SimpleMeterRegistry()), dir.toString(), 60);
+
+		BulkJob job = service.submit(new MockMultipartFile("file", "rows.csv", "text/csv", new byte[0]), "A4", "csv");
+		Path jobDir = dir.resolve(job.getJobId());
+		Files.writeString(jobDir.resolve("success.csv"), "partial");
+
+		assertNull(service.artifact(job.getJobId(), BulkWaybillJobService.SUCCESS));
+
+		hold.countDown();
+		jobExecutor.shutdown();
+		assertTrue(jobExecutor.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(BulkJob.State.FAILED, job.getState());
+		assertNull(service.artifact(job.getJobId(), BulkWaybillJobService.SUCCESS));
+		assertNull(service.artifact(job.getJobId(), BulkWaybillJobService.FAILURE));
+	}
+
+	@Test
+	void leavesNoPartialArtifactsWhenTheJobFails() throws Exception {
+		service = new BulkWaybillJobService(null, null, null, null, jobExecutor,
+				new WaybillMetrics(new SimpleMeterRegistry()), dir.toString(), 60);
+
+		BulkJob job = service.submit(new MockMultipartFile("file", "rows.csv", "text/csv", new byte[0]), "A4", "csv");
+		jobExecutor.shutdown();
+		assertTrue(jobExecutor.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(BulkJob.State.FAILED, job.getState());
+		try (Stream<Path> left = Files.list(dir.resolve(job.getJobId()))) {
+			assertEquals(List.of(), left.collect(Collectors.toList()));
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.exception.GatewayLimiterRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GatewayRateLimiterTest {
+
+	@Test
+	void quietTrafficDoesNotGrowTheLimit() {
+		GatewayRateLimiter limiter = limiter(0, 8, 60_000);
+
+		for (int i = 0; i < 200; i++) {
+			limiter.execute(() -> "ok");
+		}
+
+		assertEquals(8, limiter.currentLimit());
+	}
+
+	@Test
+	void successesGrowTheLimitWhileItIsInUse() throws Exception {
+		GatewayRateLimiter limiter = limiter(0, 4, 60_000);
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		try {
+			for (int round = 0; round < 8; round++) {
+				CyclicBarrier allInFlight = new CyclicBarrier(4);
+				List<CompletableFuture<String>> calls = new ArrayList<>();
+				for (int i = 0; i < 4; i++) {
+					calls.add(CompletableFuture.supplyAsync(() -> limiter.execute(() -> {
+						try {
+							allInFlight.await(5, TimeUnit.SECONDS);
+						} catch (Exception e) {
+							throw new IllegalStateException(e);
+						}
+						return "ok";
+					}), callers));
+				}
+				for (CompletableFuture<String> call : calls) {
+					call.get(5, TimeUnit.SECONDS);
+				}
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+
+		assertTrue(limiter.currentLimit() > 4, "limit " + limiter.currentLimit());
+	}
+
+	@Test
+	void overloadHalvesTheLimitOncePerCooldown() {
+		GatewayRateLimiter limiter = limiter(0, 8, 60_000);
+
+		for (int i = 0; i < 3; i++) {
+			assertThrows(ResourceAccessException.class, () -> limiter.execute(() -> {
+				throw new ResourceAccessException("Read timed out");
+			}));
+		}
+
+		assertEquals(4, limiter.currentLimit());
+		assertEquals(1L, limiter.stats().get("backoffs"));
+	}
+
+	@Test
+	void aCallerWithoutASlotIsRejectedAndGivesItsTokenBack() throws Exception {
+		// One token a second and a burst of two: without the refund the third
+		// call would have to wait about a second for a token.
+		GatewayRateLimiter limiter = limiter(1, 1, 100);
+		CountDownLatch holding = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> limiter.execute(() -> {
+			holding.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "held";
+		}));
+		assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+		assertThrows(GatewayLimiterRejectedException.class, () -> limiter.execute(() -> "never sent"));
+
+		release.countDown();
+		assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+		assertEquals("sent", limiter.execute(() -> "sent"));
+		assertEquals(1L, limiter.stats().get("rejected"));
+	}
+
+	private static GatewayRateLimiter limiter(double ratePerSecond, int initialLimit, long acquireTimeoutMs) {
+		return new GatewayRateLimiter(
+				new WaybillMetrics(new SimpleMeterRegistry()),
+				ratePerSecond,
+				2,
+				initialLimit,
+				1,
+				initialLimit == 1 ? 1 : 32,
+				5_000,
+				0.5,
+				60_000,
+				acquireTimeoutMs);
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WaybillMetrics;
+import com.example.demo.exception.GatewayLimiterRejectedException;
+import com.example.demo.service.GatewayResilience.ErrorClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GatewayResilienceTest {
+
+	@Test
+	void classifiesByWhetherTheRequestCanHaveBeenProcessed() {
+		Map<RuntimeException, ErrorClass> table = new LinkedHashMap<>();
+		table.put(io(new ConnectException("Connection refused")), ErrorClass.RETRYABLE);
+		table.put(io(new UnknownHostException("apigateway-sandbox.bluedart.com")), ErrorClass.RETRYABLE);
+		table.put(io(new ConnectTimeoutException("Connect to apigateway-sandbox.bluedart.com timed out")), ErrorClass.RETRYABLE);
+		table.put(io(new SocketTimeoutException("Connect timed out")), ErrorClass.RETRYABLE);
+		table.put(io(new ConnectionRequestTimeoutException("Timeout deadline: 10000 MILLISECONDS")), ErrorClass.RETRYABLE);
+		table.put(status(429), ErrorClass.RETRYABLE);
+		table.put(status(503), ErrorClass.RETRYABLE);
+
+		table.put(io(new SocketTimeoutException("Read timed out")), ErrorClass.UNCERTAIN);
+		table.put(io(new SocketException("Connection reset")), ErrorClass.UNCERTAIN);
+		table.put(new ResourceAccessException("Empty response from Bluedart"), ErrorClass.UNCERTAIN);
+		table.put(status(500), ErrorClass.UNCERTAIN);
+		table.put(status(502), ErrorClass.UNCERTAIN);
+		table.put(status(504), ErrorClass.UNCERTAIN);
+
+		table.put(status(400), ErrorClass.FATAL);
+		table.put(status(401), ErrorClass.FATAL);
+		table.put(status(404), ErrorClass.FATAL);
+		table.put(new IllegalStateException("bad request data"), ErrorClass.FATAL);
+
+		table.forEach((error, expected) ->
+				assertEquals(expected, GatewayResilience.classify(error), String.valueOf(error.getCause() != null ? error.getCause() : error)));
+	}
+
+	@Test
+	void retriesOnlyRetryableErrors() {
+		GatewayResilience resilience = resilience(10, 30_000);
+		AtomicInteger calls = new AtomicInteger();
+
+		assertEquals("ok", resilience.execute(() -> {
+			if (calls.incrementAndGet() == 1) {
+				throw status(503);
+			}
+			return "ok";
+		}));
+		assertEquals(2, calls.get());
+
+		calls.set(0);
+		assertThrows(HttpServerErrorException.class, () -> resilience.execute(() -> {
+			calls.incrementAndGet();
+			throw status(502);
+		}));
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	void refusedRequestsDoNotResetTheCircuit() {
+		GatewayResilience resilience = resilience(2, 30_000);
+
+		failWith(resilience, status(500));
+		failWith(resilience, status(400));
+		failWith(resilience, status(500));
+
+		assertEquals("OPEN", resilience.stats().get("state"));
+	}
+
+	@Test
+	void aRefusedProbeLeavesTheCircuitHalfOpen() {
+		GatewayResilience resilience = resilience(1, 0);
+		failWith(resilience, status(500));
+
+		failWith(resilience, status(400));
+		assertEquals("HALF_OPEN", resilience.stats().get("state"));
+
+		assertEquals("ok", resilience.execute(() -> "ok"));
+		assertEquals("CLOSED", resilience.stats().get("state"));
+	}
+
+	@Test
+	void limiterRejectionsLeaveTheCircuitUnchanged() {
+		GatewayResilience resilience = resilience(1, 0);
+		failWith(resilience, status(500));
+
+		AtomicInteger calls = new AtomicInteger();
+		assertThrows(GatewayLimiterRejectedException.class, () -> resilience.execute(() -> {
+			calls.incrementAndGet();
+			throw new GatewayLimiterRejectedException("no slot");
+		}));
+		assertEquals(1, calls.get());
+		assertEquals("HALF_OPEN", resilience.stats().get("state"));
+		assertEquals(1, resilience.stats().get("consecutiveFailures"));
+
+		// The probe slot was released, so the next call is let through.
+		assertEquals("ok", resilience.execute(() -> "ok"));
+		assertEquals("CLOSED", resilience.stats().get("state"));
+	}
+
+	private static void failWith(GatewayResilience resilience, RuntimeException error) {
+		assertThrows(error.getClass(), () -> resilience.execute(() -> {
+			throw error;
+		}));
+	}
+
+	private static ResourceAccessException io(IOException cause) {
+		return new ResourceAccessException("I/O error on POST request: " + cause.getMessage(), cause);
+	}
+
+	private static RuntimeException status(int status) {
+		return status >= 500
+				? new HttpServerErrorException(HttpStatusCode.valueOf(status))
+				: new HttpClientErrorException(HttpStatusCode.valueOf(status));
+	}
+
+	private static GatewayResilience resilience(int failureThreshold, long openMs) {
+		return new GatewayResilience(new WaybillMetrics(new SimpleMeterRegistry()),
+				3, 1, 1, 1.0, 20, failureThreshold, openMs);
+	}
+}
@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaybillPayloadLoggerTest {
+
+	/** The shipped bluedart.logging.payload.redact-keys. */
+	private static final List<String> REDACT_KEYS = Arrays.asList(
+			"Name,Mobile,Telephone,Address,Email,Attention,Pincode,LoginID,LicenceKey,Token".split(","));
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final WaybillPayloadLogger logger = new WaybillPayloadLogger(1.0, 1.0, REDACT_KEYS, 4096);
+
+	@Test
+	void masksPersonalDataAndCredentialsAtAnyDepth() throws Exception {
+		Map<String, Object> consignee = new HashMap<>();
+		consignee.put("ConsigneeName", "Asha Rao");
+		consignee.put("ConsigneeMobile", "9876543210");
+		consignee.put("ConsigneeAddress1", "12 MG Road");
+		consignee.put("ConsigneePincode", "560001");
+		consignee.put("ConsigneeEmailID", "asha@example.com");
+		Map<String, Object> payload = Map.of(
+				"Profile", Map.of("LoginID", "GG940111", "LicenceKey", "secret", "Api_type", "S"),
+				"Request", Map.of(
+						"Consignee", consignee,
+						"Services", Map.of("CreditReferenceNo", "REF-1", "PieceCount", 2),
+						"Shipper", Map.of("CustomerPincode", "400001", "OriginArea", "BOM")));
+
+		JsonNode redacted = MAPPER.readTree(logger.redact(payload));
+
+		assertEquals("***", redacted.at("/Profile/LoginID").asText());
+		assertEquals("***", redacted.at("/Profile/LicenceKey").asText());
+		assertEquals("S", redacted.at("/Profile/Api_type").asText());
+		for (String field : consignee.keySet()) {
+			assertEquals("***", redacted.at("/Request/Consignee/" + field).asText(), field);
+		}
+		assertEquals("***", redacted.at("/Request/Shipper/CustomerPincode").asText());
+		assertEquals("BOM", redacted.at("/Request/Shipper/OriginArea").asText());
+		assertEquals("REF-1", redacted.at("/Request/Services/CreditReferenceNo").asText());
+		assertEquals(2, redacted.at("/Request/Services/PieceCount").asInt());
+	}
+
+	@Test
+	void masksSerializedPayloadsToo() throws Exception {
+		byte[] body = "{\"Profile\":{\"LoginID\":\"GG940111\"},\"Request\":[{\"ConsigneeMobile\":\"98765\"}]}"
+				.getBytes(StandardCharsets.UTF_8);
+
+		String redacted = logger.redact(body);
+
+		assertFalse(redacted.contains("GG940111"), redacted);
+		assertFalse(redacted.contains("98765"), redacted);
+	}
+
+	@Test
+	void leavesEmptyValuesVisible() throws Exception {
+		Map<String, Object> payload = new HashMap<>();
+		payload.put("ConsigneeTelephone", "");
+		payload.put("ConsigneeAttention", null);
+
+		JsonNode redacted = MAPPER.readTree(logger.redact(payload));
+
+		assertEquals("", redacted.get("ConsigneeTelephone").asText());
+		assertTrue(redacted.get("ConsigneeAttention").isNull());
+	}
+
+	@Test
+	void neverFallsBackToTheRawPayload() {
+		String raw = "{\"LoginID\":\"GG940111\"";
+
+		String redacted = logger.redact(raw.getBytes(StandardCharsets.UTF_8));
+
+		assertFalse(redacted.contains("GG940111"), redacted);
+		assertTrue(redacted.startsWith("<unreadable payload"), redacted);
+	}
+
+	@Test
+	void truncatesLongPayloads() {
+		WaybillPayloadLogger shortLogger = new WaybillPayloadLogger(1.0, 1.0, REDACT_KEYS, 20);
+
+		String redacted = shortLogger.redact(Map.of("Services", Map.of("CreditReferenceNo", "REF-0123456789")));
+
+		assertEquals(21, redacted.length());
+		assertTrue(redacted.endsWith("…"));
+	}
+}
@@ -2,12 +2,18 @@
 
 import { useState } from "react";
 
-type BulkResult = {
+type BulkJob = {
+  jobId: string;
+  state: "QUEUED" | "RUNNING" | "COMPLETED" | "FAILED";
   total: number;
+  processed: number;
   success: number;
   failed: number;
+  error?: string;
 };
 
+const POLL_INTERVAL_MS = 2000;
+
 export default function BulkWaybillPage() {
   const BACKEND = process.env.NEXT_PUBLIC_BACKEND_URL;
 
@@ -15,7 +21,7 @@ export default function BulkWaybillPage() {
   const [labelSize, setLabelSize] = useState("A4");
   const [loading, setLoading] = useState(false);
   const [error, setError] = useState<string | null>(null);
-  const [result, setResult] = useState<BulkResult | null>(null);
+  const [result, setResult] = useState<BulkJob | null>(null);
 
   /* ---------------- TEMPLATE ---------------- */
 
@@ -53,12 +59,30 @@ export default function BulkWaybillPage() {
         throw new Error("Bulk upload failed. Please check the file.");
       }
 
-      const data: BulkResult = await res.json();
-      setResult(data);
+      let job: BulkJob = await res.json();
+      setResult(job);
 
-      // reset file after success
+      // reset file after submit
       setFile(null);
 
+      /* ---------- POLL JOB PROGRESS ---------- */
+      while (job.state === "QUEUED" || job.state === "RUNNING") {
+        await new Promise((r) => setTimeout(r, POLL_INTERVAL_MS));
+
+        const statusRes = await fetch(
+          `${BACKEND}/api/bluedart/waybill/bulk/${job.jobId}`
+        );
+        if (!statusRes.ok) {
+          throw new Error("Lost track of bulk job");
+        }
+        job = await statusRes.json();
+        setResult(job);
+      }
+
+      if (job.state === "FAILED") {
+        throw new Error(job.error || "Bulk job failed");
+      }
+
     } catch (err: any) {
       setError(err.message || "Unexpected error occurred");
     } finally {
@@ -159,7 +183,9 @@ export default function BulkWaybillPage() {
             Bulk Processing Result
           </h3>
 
+          <p>Status: <b>{result.state}</b></p>
           <p>Total Records: <b>{result.total}</b></p>
+          <p>Processed: <b>{result.processed}</b></p>
           <p className="text-green-700">
             Success: <b>{result.success}</b>
           </p>
@@ -167,11 +193,12 @@ export default function BulkWaybillPage() {
             Failed: <b>{result.failed}</b>
           </p>
 
+          {result.state === "COMPLETED" && (
           <div className="mt-4 space-y-2">
             {result.success > 0 && (
               <>
                 <a
-                  href={`${BACKEND}/api/bluedart/waybill/bulk/pdf`}
+                  href={`${BACKEND}/api/bluedart/waybill/bulk/${result.jobId}/pdf`}
                   className="block text-blue-600 underline"
                   target="_blank"
                 >
@@ -179,7 +206,7 @@ export default function BulkWaybillPage() {
                 </a>
 
                 <a
-                  href={`${BACKEND}/api/bluedart/waybill/bulk/success`}
+                  href={`${BACKEND}/api/bluedart/waybill/bulk/${result.jobId}/success`}
                   className="block text-blue-600 underline"
                   target="_blank"
                 >
@@ -190,7 +217,7 @@ export default function BulkWaybillPage() {
 
             {result.failed > 0 && (
               <a
-                href={`${BACKEND}/api/bluedart/waybill/bulk/failure`}
+                href={`${BACKEND}/api/bluedart/waybill/bulk/${result.jobId}/failure`}
                 className="block text-blue-600 underline"
                 target="_blank"
               >
@@ -198,6 +225,7 @@ export default function BulkWaybillPage() {
               </a>
             )}
           </div>
+          )}
         </div>
       )}
     </main>
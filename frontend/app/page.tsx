@@ -2,6 +2,8 @@
 
 import { useEffect, useState } from "react";
 
+const PAGE_SIZE = 50;
+
 export default function Home() {
   const [loading, setLoading] = useState(false);
   const [awb, setAwb] = useState<string | null>(null);
@@ -44,11 +46,23 @@ export default function Home() {
   });
 
   const [waybills, setWaybills] = useState<any[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
 
-useEffect(() => {
-  fetch(`${process.env.NEXT_PUBLIC_BACKEND_URL}/api/bluedart/waybills`)
+// History is read a page of summaries at a time, never as a whole.
+const loadWaybills = (cursor: string | null) => {
+  const params = new URLSearchParams({ view: "summary", limit: String(PAGE_SIZE) });
+  if (cursor) params.set("cursor", cursor);
+
+  fetch(`${process.env.NEXT_PUBLIC_BACKEND_URL}/api/waybills/page?${params}`)
     .then(res => res.json())
-    .then(setWaybills);
+    .then(page => {
+      setWaybills(prev => (cursor ? [...prev, ...page.items] : page.items));
+      setNextCursor(page.nextCursor);
+    });
+};
+
+useEffect(() => {
+  loadWaybills(null);
 }, []);
 
 
@@ -326,6 +340,15 @@ useEffect(() => {
     ))}
   </tbody>
 </table>
+
+      {nextCursor && (
+        <button
+          onClick={() => loadWaybills(nextCursor)}
+          className="mt-4 border px-4 py-2 rounded"
+        >
+          Load more
+        </button>
+      )}
     </main>
   );
 }